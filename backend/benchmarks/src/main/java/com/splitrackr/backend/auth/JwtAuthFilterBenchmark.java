@@ -0,0 +1,103 @@
+package com.splitrackr.backend.auth;
+
+import com.splitrackr.backend.user.User;
+import com.splitrackr.backend.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What JwtAuthFilter adds to each request: header check, token verification, principal
+ * lookup and the security context, up to the point the chain continues. Measured without a
+ * token, with a warm claims cache (a client's every request after the first) and with the
+ * claims cache disabled. The repository is stubbed, so the per-request active household
+ * lookup shows up as its call overhead only; on a real request it is one primary-key select.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final String EMAIL = "member1@example.com";
+
+    private JwtAuthFilter cached;
+    private JwtAuthFilter uncached;
+    private MockHttpServletRequest anonymousRequest;
+    private MockHttpServletRequest bearerRequest;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private Authentication authenticated;
+    private final FilterChain chain = (request, response) ->
+            authenticated = SecurityContextHolder.getContext().getAuthentication();
+
+    @Setup
+    public void setUp() throws Exception {
+        var user = User.builder().id(1).email(EMAIL).firstname("First1").lastname("Last1")
+                .password("x").role(Role.USER).userHouseholdId(1).build();
+        var users = (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> switch(method.getName()) {
+                    case "findByEmail" -> Optional.of(user);
+                    case "findHouseholdIdById" -> 1;
+                    default -> throw new UnsupportedOperationException("UserRepository." + method.getName());
+                });
+        var principals = new PrincipalCache(users, new SimpleMeterRegistry(), 10_000, Duration.ofMinutes(5));
+
+        var cachedJwt = JwtServiceBenchmark.jwtService(10_000);
+        cached = new JwtAuthFilter(cachedJwt, principals);
+        uncached = new JwtAuthFilter(JwtServiceBenchmark.jwtService(0), principals);
+
+        anonymousRequest = new MockHttpServletRequest("GET", "/api/v1/expense");
+        bearerRequest = new MockHttpServletRequest("GET", "/api/v1/expense");
+        bearerRequest.addHeader("Authorization", "Bearer " + cachedJwt.generateToken(Map.of(), UserPrincipal.of(user)));
+
+        // first request of the client fills the claims and principal caches
+        authenticatedRequest(cached);
+    }
+
+    @Benchmark
+    public Authentication anonymous() throws Exception {
+        cached.doFilterInternal(anonymousRequest, response, chain);
+        return authenticated;
+    }
+
+    @Benchmark
+    public Authentication bearerCachedClaims() throws Exception {
+        return authenticatedRequest(cached);
+    }
+
+    @Benchmark
+    public Authentication bearerUncachedClaims() throws Exception {
+        return authenticatedRequest(uncached);
+    }
+
+    // the context is per request, so each invocation starts without an authentication
+    private Authentication authenticatedRequest(JwtAuthFilter filter) throws Exception {
+        try {
+            filter.doFilterInternal(bearerRequest, response, chain);
+            return authenticated;
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
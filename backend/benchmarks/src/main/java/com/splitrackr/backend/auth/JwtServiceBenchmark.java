@@ -0,0 +1,91 @@
+package com.splitrackr.backend.auth;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification on the authentication path. Verification is measured against a
+ * warm claims cache (every request after a client's first) and with the cache disabled (a full
+ * HMAC check and parse). Household size does not enter here; the parameter is the number of
+ * extra claims carried in the token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    static final String SECRET = Base64.getEncoder()
+            .encodeToString("benchmark-secret-benchmark-secret-benchmark".getBytes());
+
+    @Param({"0", "8"})
+    private int extraClaims;
+
+    private JwtService cached;
+    private JwtService uncached;
+    private UserDetails user;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        cached = jwtService(10_000);
+        uncached = jwtService(0);
+        user = User.withUsername("member1@example.com").password("x").roles("USER").build();
+        claims = new HashMap<>();
+        for(int i = 0; i < extraClaims; i++) {
+            claims.put("claim" + i, "value-" + i);
+        }
+        token = cached.generateToken(claims, user);
+        cached.verifyToken(token);
+    }
+
+    @Benchmark
+    public String generate() {
+        return cached.generateToken(new HashMap<>(claims), user);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return cached.verifyToken(token);
+    }
+
+    @Benchmark
+    public Claims verifyUncached() {
+        return uncached.verifyToken(token);
+    }
+
+    static JwtService jwtService(long cacheSize) throws ReflectiveOperationException {
+        var service = new JwtService();
+        set(service, "secretKey", SECRET);
+        set(service, "jwtAccessTime", TimeUnit.HOURS.toMillis(48));
+        set(service, "claimsCacheSize", cacheSize);
+        service.init();
+        return service;
+    }
+
+    static void set(JwtService service, String field, Object value) throws ReflectiveOperationException {
+        var f = JwtService.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(service, value);
+    }
+}
@@ -0,0 +1,23 @@
+package com.splitrackr.backend.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of target/benchmarks.jar: the JMH command line, writing JSON results to
+ * jmh-result.json unless -rf/-rff say otherwise, so runs from different commits can be diffed.
+ * The GC profiler is on unless another -prof is given, so every result carries the
+ * allocation per operation (gc.alloc.rate.norm) next to its time.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(List.of(args));
+        if(!jmhArgs.contains("-rf")) jmhArgs.addAll(List.of("-rf", "json"));
+        if(!jmhArgs.contains("-rff")) jmhArgs.addAll(List.of("-rff", "jmh-result.json"));
+        if(!jmhArgs.contains("-prof")) jmhArgs.addAll(List.of("-prof", "gc"));
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(String[]::new));
+    }
+}
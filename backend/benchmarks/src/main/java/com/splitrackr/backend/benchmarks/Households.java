@@ -0,0 +1,51 @@
+package com.splitrackr.backend.benchmarks;
+
+import com.splitrackr.backend.household.model.Household;
+import com.splitrackr.backend.user.User;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic households shared by the benchmarks; the same seed gives the same
+ * data on every run and every commit.
+ */
+public final class Households {
+
+    public static final long SEED = 42;
+
+    private Households() {}
+
+    public static Household household(int id) {
+        return Household.builder().householdId(id).householdName("Household " + id).build();
+    }
+
+    public static List<User> members(int count) {
+        var members = new ArrayList<User>(count);
+        for(int i = 1; i <= count; i++) {
+            members.add(User.builder()
+                    .id(i)
+                    .firstname("First" + i)
+                    .lastname("Last" + i)
+                    .email("member" + i + "@example.com")
+                    .build());
+        }
+        return members;
+    }
+
+    // net balances in cents for the given member count, summing to zero like a closed period
+    public static Map<Integer, Integer> balances(int members, SplittableRandom random) {
+        Map<Integer, Integer> balances = new LinkedHashMap<>();
+        int total = 0;
+        for(int userId = 1; userId < members; userId++) {
+            int cents = random.nextInt(-50_000, 50_001);
+            balances.put(userId, cents);
+            total += cents;
+        }
+        balances.put(members, -total);
+        return balances;
+    }
+}
@@ -0,0 +1,122 @@
+package com.splitrackr.backend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.splitrackr.backend.expenses.dto.ExpenseResponse;
+import com.splitrackr.backend.expenses.dto.ExpenseShareResponse;
+import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import com.splitrackr.backend.expenses.model.SplitType;
+import com.splitrackr.backend.settlement.dto.SettlementResponse;
+import com.splitrackr.backend.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON writing of the two largest responses: an expense list page (50 expenses, one share
+ * per member) and a settlement with a balance and a transfer per member. The mapper is
+ * built the way Spring Boot builds the application's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"4", "16", "64"})
+    private int members;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private List<ExpenseResponse> expensePage;
+    private SettlementResponse settlement;
+
+    @Setup
+    public void setUp() {
+        var random = new SplittableRandom(Households.SEED);
+        List<User> users = Households.members(members);
+        var household = ExpenseResponse.HouseholdDto.builder().householdId(1).name("Household 1").build();
+
+        expensePage = new ArrayList<>(PAGE_SIZE);
+        for(int i = 0; i < PAGE_SIZE; i++) {
+            var payer = users.get(random.nextInt(members));
+            int amount = random.nextInt(100, 20_000);
+            List<ExpenseShareResponse> shares = new ArrayList<>(members);
+            for(int m = 0; m < members; m++) {
+                shares.add(ExpenseShareResponse.builder()
+                        .shareId(i * members + m)
+                        .userId(users.get(m).getId())
+                        .amountCents(amount / members)
+                        .build());
+            }
+            expensePage.add(ExpenseResponse.builder()
+                    .id(i + 1)
+                    .household(household)
+                    .payer(ExpenseResponse.UserDto.builder()
+                            .id(payer.getId())
+                            .email(payer.getEmail())
+                            .firstName(payer.getFirstname())
+                            .lastName(payer.getLastname())
+                            .build())
+                    .amountCents(amount)
+                    .description("expense " + i)
+                    .type(SplitType.EQUAL)
+                    .status(ExpenseStatus.ACTIVE)
+                    .shares(shares)
+                    .build());
+        }
+
+        List<SettlementResponse.UserBalanceDto> balances = new ArrayList<>(members);
+        List<SettlementResponse.TransferDto> transfers = new ArrayList<>(members);
+        Households.balances(members, random).forEach((userId, cents) -> {
+            balances.add(SettlementResponse.UserBalanceDto.builder()
+                    .userId(userId).userName("First" + userId + " Last" + userId).netCents(cents).build());
+            transfers.add(SettlementResponse.TransferDto.builder()
+                    .fromUserId(userId).toUserId(1).amountCents(Math.abs(cents))
+                    .fromUserName("First" + userId + " Last" + userId).toUserName("First1 Last1").build());
+        });
+        Instant now = Instant.parse("2025-06-01T12:00:00Z");
+        settlement = SettlementResponse.builder()
+                .settlementId(1)
+                .householdId(1)
+                .status("OPEN")
+                .periodStart(now.minusSeconds(30L * 24 * 3600))
+                .periodEnd(now)
+                .createdAt(now)
+                .asOf(now)
+                .createdBy(SettlementResponse.UserDto.builder().id(1).email("member1@example.com").build())
+                .balances(balances)
+                .transfers(transfers)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] expensePage() throws Exception {
+        return objectMapper.writeValueAsBytes(expensePage);
+    }
+
+    @Benchmark
+    public byte[] settlement() throws Exception {
+        return objectMapper.writeValueAsBytes(settlement);
+    }
+}
@@ -0,0 +1,76 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.splitrackr.backend.benchmarks.Households;
+import com.splitrackr.backend.expenses.dto.ExpenseShareRequest;
+import com.splitrackr.backend.expenses.model.Expense;
+import com.splitrackr.backend.expenses.model.ExpenseShare;
+import com.splitrackr.backend.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EQUAL and FIXED share allocation for one expense, members passed in shuffled order the way
+ * they come out of a request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShareAllocationBenchmark {
+
+    private static final int AMOUNT_CENTS = 123_457;
+
+    @Param({"2", "4", "16", "64"})
+    private int members;
+
+    private ExpenseService service;
+    private final Expense expense = Expense.builder().amountCents(AMOUNT_CENTS).build();
+    private List<User> users;
+    private List<ExpenseShareRequest> fixedShares;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        // the split helpers use none of the service's collaborators
+        var constructor = ExpenseService.class.getDeclaredConstructors()[0];
+        service = (ExpenseService) constructor.newInstance(new Object[constructor.getParameterCount()]);
+
+        users = new ArrayList<>(Households.members(members));
+        Collections.shuffle(users, new java.util.Random(Households.SEED));
+
+        var random = new SplittableRandom(Households.SEED);
+        fixedShares = new ArrayList<>(members);
+        int left = AMOUNT_CENTS;
+        for(int i = 0; i < members; i++) {
+            int cents = i == members - 1 ? left : random.nextInt(0, left / 2 + 1);
+            left -= cents;
+            fixedShares.add(ExpenseShareRequest.builder().payerId(users.get(i).getId()).amountCents(cents).build());
+        }
+    }
+
+    @Benchmark
+    public List<ExpenseShare> equal() {
+        return service.calculateEqual(expense, users, AMOUNT_CENTS);
+    }
+
+    @Benchmark
+    public List<ExpenseShare> fixed() {
+        return service.calculateFixed(expense, users, fixedShares, AMOUNT_CENTS);
+    }
+}
@@ -0,0 +1,113 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.Main;
+import com.splitrackr.backend.benchmarks.Households;
+import com.splitrackr.backend.settlement.service.BalanceCalculationService.BalanceMode;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One household's balances in each mode, against an embedded Postgres migrated by Flyway and
+ * read through the application's own repositories: SCAN (expenses, then each one's shares, as
+ * entities), AGGREGATE (one GROUP BY query) and LEDGER (the maintained per-member rows), from
+ * 100 to 100,000 expenses in the open period.
+ *
+ * Each trial boots the application context without a web server, seeds the household with
+ * SQL and analyzes it, so setup takes a while; the SCAN points at 100,000 expenses run for
+ * seconds per call. The numbers include JDBC round trips to a local server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BalanceCalculationBenchmark {
+
+    private static final int HOUSEHOLD_ID = 1;
+
+    @Param({"SCAN", "AGGREGATE", "LEDGER"})
+    private BalanceMode mode;
+
+    @Param({"4", "16"})
+    private int members;
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int expenses;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private BalanceCalculationService service;
+    private TransactionTemplate readOnly;
+
+    @Setup
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--security.jwt.secret=YmVuY2htYXJrLXNlY3JldC1iZW5jaG1hcmstc2VjcmV0LWJlbmNobWFyaw==",
+                        "--app.cors.allowed-origins=http://localhost",
+                        "--app.archive.enabled=false",
+                        "--app.balance.mode=" + mode,
+                        "--logging.level.root=warn");
+        seed(context.getBean(JdbcTemplate.class));
+
+        context.getBean(BalanceLedgerService.class).rebuild(HOUSEHOLD_ID);
+        service = context.getBean(BalanceCalculationService.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+    }
+
+    // members, then expenses over the last year paid in turn and split equally over everyone
+    private void seed(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO _user (id, user_household_id, email, firstname, lastname, password, role) " +
+                "SELECT g, ?, 'member' || g || '@example.com', 'First' || g, 'Last' || g, 'x', 'USER' " +
+                "FROM generate_series(1, ?) g", HOUSEHOLD_ID, members);
+        jdbc.update("INSERT INTO household (household_id, owner_id, household_name, invite_code, created_date, " +
+                "balance_ledger_initialized, data_version) VALUES (?, 1, 'Household', 'BENCH001', now(), false, 0)",
+                HOUSEHOLD_ID);
+        jdbc.update("INSERT INTO expense (household_id, payer_id, amount_cents, date_created, description, " +
+                "split_type, status) " +
+                "SELECT ?, k % ? + 1, 100 + (k * ?) % 19900, now() - (k * interval '1 minute') * (525600 / ?), " +
+                "'Groceries', 'EQUAL', 'ACTIVE' FROM generate_series(1, ?) k",
+                HOUSEHOLD_ID, members, Households.SEED, expenses, expenses);
+        jdbc.update("INSERT INTO expense_share (expense_id, user_id, amount_cents, expense_date) " +
+                "SELECT e.expense_id, m, e.amount_cents / ? + CASE WHEN m <= e.amount_cents % ? THEN 1 ELSE 0 END, " +
+                "e.date_created FROM expense e, generate_series(1, ?) m", members, members, members);
+        jdbc.execute("VACUUM ANALYZE _user, household, expense, expense_share");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> calculateBalances() {
+        // the settlement endpoints call it inside their transaction
+        return readOnly.execute(status -> service.calculateBalances(HOUSEHOLD_ID));
+    }
+}
@@ -0,0 +1,55 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.benchmarks.Households;
+import com.splitrackr.backend.settlement.service.TransferCalculationService.TransferProposal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The exact minimum-transfer solver from 12 to 20 non-zero members, with the member limit at
+ * the household size and a budget it never reaches, so every point is a full subset DP rather
+ * than the greedy fallback. Random balances leave no opposite pairs to split off, which is the
+ * solver's worst case. Time and gc.alloc.rate.norm roughly double per extra member; 20 is the
+ * solver's cap, where its tables take ~5MB per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ExactTransferBenchmark {
+
+    private static final Duration UNBOUNDED = Duration.ofMinutes(1);
+
+    @Param({"12", "14", "16", "18", "20"})
+    private int members;
+
+    private final TransferCalculationService service = new TransferCalculationService();
+    private Map<Integer, Integer> balances;
+
+    @Setup
+    public void setUp() {
+        balances = Households.balances(members, new SplittableRandom(Households.SEED));
+    }
+
+    @Benchmark
+    public List<TransferProposal> exact() {
+        return service.calculateOptimalTransfers(balances, members, UNBOUNDED);
+    }
+}
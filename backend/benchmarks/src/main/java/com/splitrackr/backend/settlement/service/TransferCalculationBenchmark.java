@@ -0,0 +1,73 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.benchmarks.Households;
+import com.splitrackr.backend.settlement.service.TransferCalculationService.TransferBuffer;
+import com.splitrackr.backend.settlement.service.TransferCalculationService.TransferProposal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settling a closed period with the greedy matcher from 10 to 10,000 members: the map entry
+ * point, the allocation-free array engine, and the boxed implementation both replaced
+ * ({@code boxed}). BenchmarkMain runs with -prof gc, so gc.alloc.rate.norm next to each score
+ * is the bytes allocated per settlement. The exact solver has its own ExactTransferBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferCalculationBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int members;
+
+    private final TransferCalculationService service = new TransferCalculationService();
+    private Map<Integer, Integer> balances;
+    private int[] userIds;
+    private int[] netCents;
+    private final TransferBuffer buffer = new TransferBuffer();
+
+    @Setup
+    public void setUp() {
+        balances = Households.balances(members, new SplittableRandom(Households.SEED));
+        userIds = new int[members];
+        netCents = new int[members];
+        int i = 0;
+        for(var entry : balances.entrySet()) {
+            userIds[i] = entry.getKey();
+            netCents[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    @Benchmark
+    public List<TransferProposal> greedy() {
+        return service.calculateMinimalTransfers(balances);
+    }
+
+    @Benchmark
+    public int greedyArrays() {
+        return service.calculateMinimalTransfers(userIds, netCents, members, buffer);
+    }
+
+    @Benchmark
+    public List<TransferProposal> boxed() {
+        return BoxedTransferCalculation.calculateMinimalTransfers(balances);
+    }
+}
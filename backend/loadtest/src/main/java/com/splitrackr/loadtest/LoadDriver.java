@@ -0,0 +1,403 @@
+package com.splitrackr.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Closed-loop HTTP driver: --clients threads each log in as one seeded user and then pick
+ * operations from --mix until --duration is over, sleeping an exponential --think-ms time between
+ * them. Latencies of every request after --warmup go into one HdrHistogram per endpoint.
+ *
+ * Operations:
+ * - login: re-authenticate as the client's user
+ * - register: register a fresh user and create a household for it
+ * - expense.create / expense.update / expense.delete: on expenses this client created
+ * - expense.list: first page of /expense/list/page
+ * - settlement.poll: GET /settlement with the last ETag, so an unchanged household answers 304
+ * - settlement.open: open (or refresh) the household's settlement without finalizing it
+ * - settlement.cycle: open a settlement and finalize it
+ *
+ * Being closed-loop, a slow server also slows the offered load; compare runs at the same
+ * --clients and --think-ms rather than by throughput alone.
+ */
+final class LoadDriver {
+
+    private static final String DEFAULT_MIX = "login:1,register:1,expense.create:20,expense.update:8,"
+            + "expense.delete:4,expense.list:25,settlement.poll:38,settlement.cycle:3";
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final List<SeededUser> users;
+    private final int clients;
+    private final Duration duration;
+    private final Duration warmup;
+    private final long thinkMillis;
+    private final double fixedRatio;
+    private final long seed;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+    private final Path out;
+    private final HttpClient http;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+
+    LoadDriver(Options options) throws IOException {
+        this.baseUrl = options.string("base-url", "http://localhost:8080") + "/api/v1";
+        this.users = readUsers(Path.of(options.string("users-file", "loadtest-users.csv")));
+        this.clients = options.integer("clients", 32);
+        this.duration = options.duration("duration", Duration.ofSeconds(60));
+        this.warmup = options.duration("warmup", Duration.ofSeconds(10));
+        this.thinkMillis = options.longValue("think-ms", 0);
+        this.fixedRatio = options.decimal("fixed-ratio", 0.3);
+        this.seed = options.longValue("seed", 42);
+        this.out = options.string("out", null) == null ? null : Path.of(options.string("out", null));
+
+        Map<String, Integer> mix = options.weights("mix", DEFAULT_MIX);
+        this.operations = mix.keySet().toArray(String[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for(int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if(total <= 0) throw new IllegalArgumentException("The mix needs at least one positive weight");
+        if(users.isEmpty()) throw new IllegalArgumentException("No users in the users file, run seed first");
+
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    void run() throws Exception {
+        System.out.printf("%d clients for %s after %s warmup against %s%n", clients, duration, warmup, baseUrl);
+        long deadline = System.nanoTime() + warmup.plus(duration).toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < clients; i++) {
+            var client = new Client(users.get(i % users.size()), new SplittableRandom(seed + i), deadline);
+            var thread = new Thread(client, "client-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        Thread.sleep(warmup.toMillis());
+        endpoints.values().forEach(Endpoint::reset);
+        measuring = true;
+        long started = System.nanoTime();
+        for(var thread : threads) {
+            thread.join();
+        }
+        measuring = false;
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        report(seconds);
+    }
+
+    private void report(double seconds) throws IOException {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        endpoints.keySet().stream().sorted().forEach(name -> {
+            var histogram = endpoints.get(name).histogram();
+            if(histogram.getTotalCount() > 0) histograms.put(name, histogram); // only hit during warmup
+        });
+        Histogram all = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        histograms.values().forEach(all::add);
+
+        System.out.printf("%n%-28s %9s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        histograms.forEach((name, histogram) -> printRow(name, histogram, endpoints.get(name).errors.sum(), seconds));
+        long errors = histograms.keySet().stream().mapToLong(name -> endpoints.get(name).errors.sum()).sum();
+        printRow("total", all, errors, seconds);
+
+        if(out != null) {
+            ObjectNode root = mapper.createObjectNode();
+            root.put("baseUrl", baseUrl);
+            root.put("clients", clients);
+            root.put("seconds", seconds);
+            root.put("thinkMs", thinkMillis);
+            root.put("mix", String.join(",", operations));
+            ObjectNode byEndpoint = root.putObject("endpoints");
+            histograms.forEach((name, histogram) -> summary(byEndpoint.putObject(name), histogram,
+                    endpoints.get(name).errors.sum(), seconds));
+            summary(root.putObject("total"), all, errors, seconds);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), root);
+            System.out.println("\nSummary written to " + out);
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, long errors, double seconds) {
+        System.out.printf("%-28s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                histogram.getTotalCount(), histogram.getTotalCount() / seconds, errors,
+                millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void summary(ObjectNode node, Histogram histogram, long errors, double seconds) {
+        node.put("count", histogram.getTotalCount());
+        node.put("throughput", histogram.getTotalCount() / seconds);
+        node.put("errors", errors);
+        node.put("p50Ms", millis(histogram, 50));
+        node.put("p90Ms", millis(histogram, 90));
+        node.put("p99Ms", millis(histogram, 99));
+        node.put("p999Ms", millis(histogram, 99.9));
+        node.put("maxMs", histogram.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static List<SeededUser> readUsers(Path file) throws IOException {
+        try(var lines = Files.lines(file)) {
+            return lines.skip(1)
+                    .filter(line -> !line.isBlank())
+                    .map(line -> line.split(","))
+                    .map(f -> new SeededUser(f[0], f[1], Integer.parseInt(f[2]), Integer.parseInt(f[3])))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> new Endpoint());
+    }
+
+    record SeededUser(String email, String password, int userId, int householdId) {}
+
+    private record CreatedExpense(int id, boolean fixed, int[] members) {}
+
+    private record Response(int status, JsonNode body, String etag) {}
+
+    private static final class Endpoint {
+        private final Recorder recorder = new Recorder(HIGHEST_LATENCY_MICROS, 3);
+        private final Histogram total = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        private final LongAdder errors = new LongAdder();
+
+        void reset() {
+            recorder.reset();
+            errors.reset();
+        }
+
+        synchronized Histogram histogram() {
+            total.add(recorder.getIntervalHistogram());
+            return total;
+        }
+    }
+
+    /** One virtual user; not shared between threads. */
+    private final class Client implements Runnable {
+
+        private final SeededUser user;
+        private final SplittableRandom random;
+        private final long deadline;
+        private final int[] householdMembers;
+        private final ArrayDeque<CreatedExpense> created = new ArrayDeque<>();
+        private String token;
+        private String settlementEtag;
+
+        Client(SeededUser user, SplittableRandom random, long deadline) {
+            this.user = user;
+            this.random = random;
+            this.deadline = deadline;
+            this.householdMembers = users.stream()
+                    .filter(u -> u.householdId() == user.householdId())
+                    .mapToInt(SeededUser::userId)
+                    .toArray();
+        }
+
+        @Override
+        public void run() {
+            login();
+            while(System.nanoTime() < deadline) {
+                try {
+                    if(token == null) {
+                        login();
+                    } else {
+                        operation(pick());
+                    }
+                    if(thinkMillis > 0) {
+                        Thread.sleep((long) (-thinkMillis * Math.log(1 - random.nextDouble())));
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private String pick() {
+            int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for(int i = 0; i < cumulativeWeights.length; i++) {
+                if(r < cumulativeWeights[i]) return operations[i];
+            }
+            throw new IllegalStateException();
+        }
+
+        private void operation(String operation) {
+            switch(operation) {
+                case "login" -> login();
+                case "register" -> register();
+                case "expense.create" -> createExpense();
+                case "expense.update" -> updateExpense();
+                case "expense.delete" -> deleteExpense();
+                case "expense.list" -> send("GET /expense/list/page", "GET", "/expense/list/page?limit=50", null, token, null);
+                case "settlement.poll" -> pollSettlement();
+                case "settlement.open" -> send("POST /settlement/open", "POST", "/settlement/open", null, token, null);
+                case "settlement.cycle" -> settlementCycle();
+                default -> throw new IllegalArgumentException("Unknown operation in --mix: " + operation);
+            }
+        }
+
+        private void login() {
+            var body = mapper.createObjectNode().put("email", user.email()).put("password", user.password());
+            var response = send("POST /auth/authenticate", "POST", "/auth/authenticate", body, null, null);
+            token = response != null && response.status() == 200 ? response.body().path("token").asText(null) : null;
+        }
+
+        private void register() {
+            String email = "reg-" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + "@loadtest.splitrackr";
+            var body = mapper.createObjectNode()
+                    .put("firstName", "Load").put("lastName", "Registered")
+                    .put("email", email).put("password", user.password());
+            var response = send("POST /auth/register", "POST", "/auth/register", body, null, null);
+            if(response == null || response.status() != 200) return;
+            String registered = response.body().path("token").asText(null);
+            var household = mapper.createObjectNode().put("houseHoldName", "Registered " + email);
+            send("POST /household", "POST", "/household", household, registered, null);
+        }
+
+        private void createExpense() {
+            boolean fixed = random.nextDouble() < fixedRatio;
+            int amount = 100 + random.nextInt(20_000);
+            int[] members = householdMembers;
+            var body = mapper.createObjectNode()
+                    .put("description", "Load expense")
+                    .put("amountCents", amount)
+                    .put("type", fixed ? "FIXED" : "EQUAL");
+            body.set("share", shares(members, fixed ? fixedAmounts(amount, members.length) : null));
+            var response = send("POST /expense", "POST", "/expense", body, token, null);
+            if(response != null && response.status() == 200) {
+                created.addLast(new CreatedExpense(response.body().path("id").asInt(), fixed, members));
+                // keep the working set bounded so long runs do not grow it without limit
+                if(created.size() > 100) created.removeFirst();
+            }
+        }
+
+        private void updateExpense() {
+            var expense = created.peekLast();
+            if(expense == null) {
+                createExpense();
+                return;
+            }
+            int amount = 100 + random.nextInt(20_000);
+            var body = mapper.createObjectNode()
+                    .put("description", "Load expense (edited)")
+                    .put("amountCents", amount);
+            // FIXED expenses need new amounts whenever the total changes
+            if(expense.fixed()) body.set("share", shares(expense.members(), fixedAmounts(amount, expense.members().length)));
+            send("PUT /expense/update", "PUT", "/expense/update?expenseId=" + expense.id(), body, token, null);
+        }
+
+        private void deleteExpense() {
+            var expense = created.pollFirst();
+            if(expense == null) {
+                createExpense();
+                return;
+            }
+            send("DELETE /expense/delete", "DELETE", "/expense/delete?expenseId=" + expense.id(), null, token, null);
+        }
+
+        private void pollSettlement() {
+            var response = send("GET /settlement", "GET", "/settlement", null, token, settlementEtag);
+            if(response != null && response.etag() != null) settlementEtag = response.etag();
+        }
+
+        private void settlementCycle() {
+            var opened = send("POST /settlement/open", "POST", "/settlement/open", null, token, null);
+            if(opened == null || opened.status() != 200) return;
+            int settlementId = opened.body().path("settlementId").asInt();
+            send("PUT /settlement/finalize", "PUT", "/settlement/finalize?settlementId=" + settlementId, null, token, null);
+        }
+
+        private ArrayNode shares(int[] members, int[] amounts) {
+            var share = mapper.createArrayNode();
+            for(int i = 0; i < members.length; i++) {
+                var entry = share.addObject().put("payerId", members[i]);
+                if(amounts != null) entry.put("amountCents", amounts[i]);
+            }
+            return share;
+        }
+
+        private int[] fixedAmounts(int amount, int count) {
+            int[] amounts = new int[count];
+            int left = amount;
+            for(int i = 0; i < count - 1; i++) {
+                amounts[i] = random.nextInt(left / (count - i) + 1);
+                left -= amounts[i];
+            }
+            amounts[count - 1] = left;
+            return amounts;
+        }
+
+        /**
+         * Sends one request and records its latency under the endpoint name. Returns null when
+         * the request failed before a response arrived; any status from 400 up counts as an error.
+         */
+        private Response send(String name, String method, String path, JsonNode body, String bearer, String ifNoneMatch) {
+            var builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Accept", "application/json");
+            if(bearer != null) builder.header("Authorization", "Bearer " + bearer);
+            if(ifNoneMatch != null) builder.header("If-None-Match", ifNoneMatch);
+            if(body != null) {
+                builder.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofString(body.toString()));
+            } else {
+                builder.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+
+            var endpoint = endpoint(name);
+            long started = System.nanoTime();
+            try {
+                var response = http.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+                long micros = (System.nanoTime() - started) / 1000;
+                if(measuring) {
+                    endpoint.recorder.recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+                    if(response.statusCode() >= 400) endpoint.errors.increment();
+                }
+                byte[] bytes = response.body();
+                JsonNode json = bytes.length > 0 && response.statusCode() == 200 ? mapper.readTree(bytes) : mapper.nullNode();
+                return new Response(response.statusCode(), json, response.headers().firstValue("ETag").orElse(null));
+            } catch(IOException e) {
+                if(measuring) endpoint.errors.increment();
+                return null;
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
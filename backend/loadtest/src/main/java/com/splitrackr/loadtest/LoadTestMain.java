@@ -0,0 +1,24 @@
+package com.splitrackr.loadtest;
+
+/**
+ * Entry point: {@code seed} loads synthetic households into Postgres, {@code run} drives the
+ * HTTP API with the seeded users. See README.md for the options.
+ */
+public final class LoadTestMain {
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length == 0) {
+            System.err.println("usage: java -jar loadtest.jar seed|run [--key=value ...]");
+            System.exit(2);
+        }
+        var options = Options.parse(args, 1);
+        switch(args[0]) {
+            case "seed" -> new Seeder(options).seed();
+            case "run" -> new LoadDriver(options).run();
+            default -> throw new IllegalArgumentException("Unknown command " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.splitrackr.loadtest;
+
+import org.postgresql.PGConnection;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes N households of M members with K expenses each straight into Postgres with COPY,
+ * then builds their balance ledgers and moves the id sequences past the new rows.
+ *
+ * Expenses follow what the app would have written: a log-normal amount, EQUAL splits over all
+ * or some members with the remainder on the lowest user ids, FIXED splits with random weights,
+ * dates spread over the last --days, and a small share soft-deleted. The same --seed gives the
+ * same data. Every seeded user gets --password, and --users-file lists them for the driver.
+ */
+final class Seeder {
+
+    private static final String[] DESCRIPTIONS = {
+            "Groceries", "Rent", "Electricity", "Internet", "Dinner out", "Takeaway", "Cleaning supplies",
+            "Water bill", "Streaming", "Coffee beans", "Gas", "Household repairs", "Furniture", "Party"
+    };
+    private static final int HOUSEHOLDS_PER_COPY = 200;
+
+    private final String jdbcUrl;
+    private final int households;
+    private final int members;
+    private final int expenses;
+    private final double fixedRatio;
+    private final double deletedRatio;
+    private final int days;
+    private final String password;
+    private final String run;
+    private final Path usersFile;
+    private final SplittableRandom random;
+
+    Seeder(Options options) {
+        this.jdbcUrl = options.string("jdbc-url",
+                "jdbc:postgresql://localhost:55432/splitrackr?user=splitrackr&password=splitrackr");
+        this.households = options.integer("households", 100);
+        this.members = options.integer("members", 4);
+        this.expenses = options.integer("expenses", 200);
+        this.fixedRatio = options.decimal("fixed-ratio", 0.3);
+        this.deletedRatio = options.decimal("deleted-ratio", 0.02);
+        this.days = options.integer("days", 90);
+        this.password = options.string("password", "loadtest");
+        this.run = options.string("run", Long.toString(System.currentTimeMillis(), 36));
+        this.usersFile = Path.of(options.string("users-file", "loadtest-users.csv"));
+        this.random = new SplittableRandom(options.longValue("seed", 42));
+        if(members < 1 || households < 1 || expenses < 0) {
+            throw new IllegalArgumentException("households and members must be positive, expenses not negative");
+        }
+    }
+
+    void seed() throws SQLException, IOException {
+        long started = System.nanoTime();
+        String passwordHash = new BCryptPasswordEncoder().encode(password);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+        try(Connection connection = DriverManager.getConnection(jdbcUrl);
+            var users = new PrintWriter(Files.newBufferedWriter(usersFile))) {
+            connection.setAutoCommit(false);
+            var copy = connection.unwrap(PGConnection.class).getCopyAPI();
+
+            int userId = maxId(connection, "_user", "id");
+            int householdId = maxId(connection, "household", "household_id");
+            int membershipId = maxId(connection, "household_membership", "household_membership_id");
+            // archived rows keep their ids, so new ones must clear them too
+            int expenseId = Math.max(maxId(connection, "expense", "expense_id"),
+                    maxId(connection, "expense_archive", "expense_id"));
+            int shareId = Math.max(maxId(connection, "expense_share", "share_id"),
+                    maxId(connection, "expense_share_archive", "share_id"));
+            int firstHousehold = householdId + 1;
+
+            users.println("email,password,user_id,household_id");
+            for(int from = 0; from < households; from += HOUSEHOLDS_PER_COPY) {
+                var userRows = new StringBuilder();
+                var householdRows = new StringBuilder();
+                var membershipRows = new StringBuilder();
+                var expenseRows = new StringBuilder();
+                var shareRows = new StringBuilder();
+
+                for(int h = from; h < Math.min(households, from + HOUSEHOLDS_PER_COPY); h++) {
+                    householdId++;
+                    int[] memberIds = new int[members];
+                    for(int m = 0; m < members; m++) {
+                        memberIds[m] = ++userId;
+                        String email = "h" + householdId + "m" + m + "." + run + "@loadtest.splitrackr";
+                        csv(userRows, userId, householdId, email, "Load", "H" + householdId + "M" + m, passwordHash, "USER");
+                        csv(membershipRows, ++membershipId, householdId, userId, now, m == 0 ? "OWNER" : "MEMBER");
+                        users.println(email + "," + password + "," + userId + "," + householdId);
+                    }
+                    csv(householdRows, householdId, memberIds[0], "Load household " + householdId,
+                            String.format("%08X", householdId), now, false, 0);
+
+                    Instant[] dates = new Instant[expenses];
+                    for(int k = 0; k < expenses; k++) {
+                        dates[k] = now.minusMillis(random.nextLong(Duration.ofDays(days).toMillis()));
+                    }
+                    Arrays.sort(dates);
+                    for(int k = 0; k < expenses; k++) {
+                        expenseId++;
+                        int payer = memberIds[random.nextInt(members)];
+                        int amount = amountCents();
+                        boolean fixed = random.nextDouble() < fixedRatio;
+                        String status = random.nextDouble() < deletedRatio ? "DELETED" : "ACTIVE";
+                        csv(expenseRows, expenseId, householdId, payer, amount, dates[k],
+                                DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], fixed ? "FIXED" : "EQUAL", status);
+                        int[] participants = participants(memberIds);
+                        int[] cents = fixed ? fixedSplit(amount, participants.length) : equalSplit(amount, participants.length);
+                        for(int p = 0; p < participants.length; p++) {
+                            csv(shareRows, ++shareId, expenseId, participants[p], cents[p], dates[k]);
+                        }
+                    }
+                }
+
+                copy.copyIn("COPY _user (id, user_household_id, email, firstname, lastname, password, role) "
+                        + "FROM STDIN (FORMAT csv)", new StringReader(userRows.toString()));
+                copy.copyIn("COPY household (household_id, owner_id, household_name, invite_code, created_date, "
+                        + "balance_ledger_initialized, data_version) FROM STDIN (FORMAT csv)",
+                        new StringReader(householdRows.toString()));
+                copy.copyIn("COPY household_membership (household_membership_id, household_id, user_id, "
+                        + "joined_date, role) FROM STDIN (FORMAT csv)", new StringReader(membershipRows.toString()));
+                copy.copyIn("COPY expense (expense_id, household_id, payer_id, amount_cents, date_created, "
+                        + "description, split_type, status) FROM STDIN (FORMAT csv)",
+                        new StringReader(expenseRows.toString()));
+                copy.copyIn("COPY expense_share (share_id, expense_id, user_id, amount_cents, expense_date) "
+                        + "FROM STDIN (FORMAT csv)", new StringReader(shareRows.toString()));
+            }
+
+            buildLedgers(connection, firstHousehold, householdId);
+            alignSequences(connection);
+            connection.commit();
+
+            try(var statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                statement.execute("ANALYZE _user, household, household_membership, expense, expense_share, household_balance");
+            }
+        }
+
+        System.out.printf("Seeded %d households x %d members x %d expenses (run %s) in %.1fs; users in %s%n",
+                households, members, expenses, run, (System.nanoTime() - started) / 1e9, usersFile);
+    }
+
+    // log-normal around 18 EUR, clamped to 1..5000 EUR
+    private int amountCents() {
+        double cents = Math.exp(random.nextGaussian() * 0.9 + 7.5);
+        return (int) Math.max(100, Math.min(500_000, Math.round(cents)));
+    }
+
+    // everyone most of the time, otherwise a random subset of at least one, in user id order
+    private int[] participants(int[] memberIds) {
+        if(memberIds.length == 1 || random.nextDouble() < 0.7) return memberIds;
+        List<Integer> chosen = new ArrayList<>();
+        for(int id : memberIds) {
+            if(random.nextBoolean()) chosen.add(id);
+        }
+        if(chosen.isEmpty()) chosen.add(memberIds[random.nextInt(memberIds.length)]);
+        return chosen.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // same rule as the app: the remainder goes one cent each to the lowest user ids
+    private static int[] equalSplit(int amount, int count) {
+        int[] cents = new int[count];
+        for(int i = 0; i < count; i++) {
+            cents[i] = amount / count + (i < amount % count ? 1 : 0);
+        }
+        return cents;
+    }
+
+    private int[] fixedSplit(int amount, int count) {
+        double[] weights = new double[count];
+        double total = 0;
+        for(int i = 0; i < count; i++) {
+            weights[i] = 0.2 + random.nextDouble();
+            total += weights[i];
+        }
+        int[] cents = new int[count];
+        int assigned = 0;
+        for(int i = 0; i < count; i++) {
+            cents[i] = (int) (amount * weights[i] / total);
+            assigned += cents[i];
+        }
+        cents[0] += amount - assigned;
+        return cents;
+    }
+
+    private static void buildLedgers(Connection connection, int firstHousehold, int lastHousehold) throws SQLException {
+        String ledger = "INSERT INTO household_balance (household_id, user_id, net_cents) "
+                + "SELECT household_id, user_id, SUM(cents) FROM ("
+                + " SELECT e.household_id, e.payer_id AS user_id, e.amount_cents AS cents FROM expense e"
+                + "  WHERE e.status = 'ACTIVE' AND e.household_id BETWEEN ? AND ?"
+                + " UNION ALL"
+                + " SELECT e.household_id, s.user_id, -s.amount_cents FROM expense e"
+                + "  JOIN expense_share s ON s.expense_id = e.expense_id AND s.expense_date = e.date_created"
+                + "  WHERE e.status = 'ACTIVE' AND e.household_id BETWEEN ? AND ?"
+                + ") t GROUP BY household_id, user_id";
+        try(var statement = connection.prepareStatement(ledger)) {
+            statement.setInt(1, firstHousehold);
+            statement.setInt(2, lastHousehold);
+            statement.setInt(3, firstHousehold);
+            statement.setInt(4, lastHousehold);
+            statement.executeUpdate();
+        }
+        try(var statement = connection.prepareStatement(
+                "UPDATE household SET balance_ledger_initialized = true WHERE household_id BETWEEN ? AND ?")) {
+            statement.setInt(1, firstHousehold);
+            statement.setInt(2, lastHousehold);
+            statement.executeUpdate();
+        }
+    }
+
+    // identity columns and the pooled user sequence must hand out ids above the seeded ones
+    private static void alignSequences(Connection connection) throws SQLException {
+        try(var statement = connection.createStatement()) {
+            for(String[] column : new String[][]{
+                    {"household", "household_id"}, {"household_membership", "household_membership_id"},
+                    {"expense", "expense_id"}, {"expense_share", "share_id"}, {"household_balance", "id"}}) {
+                String sequence = "pg_get_serial_sequence('" + column[0] + "', '" + column[1] + "')";
+                statement.execute("SELECT setval(" + sequence + ", GREATEST(nextval(" + sequence + "), "
+                        + "(SELECT COALESCE(MAX(" + column[1] + "), 0) + 1 FROM " + column[0] + ")), false)");
+            }
+            statement.execute("SELECT setval('_user_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM _user) + 50, "
+                    + "(SELECT last_value FROM _user_seq)))");
+        }
+    }
+
+    private static int maxId(Connection connection, String table, String column) throws SQLException {
+        try(var statement = connection.createStatement();
+            var rs = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void csv(StringBuilder out, Object... values) {
+        for(int i = 0; i < values.length; i++) {
+            if(i > 0) out.append(',');
+            String value = String.valueOf(values[i]);
+            if(value.indexOf(',') >= 0 || value.indexOf('"') >= 0) {
+                out.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(value);
+            }
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,66 @@
+package com.splitrackr.backend.auth;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.splitrackr.backend.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Authenticated principals keyed by JWT subject (email), bounded by size and TTL.
+ *
+ * Only the user's identity is cached. The active household changes on switch, join and
+ * create, and another instance sharing the database would not see an eviction here, so it
+ * is read with every request by primary key instead of the whole _user row.
+ *
+ * Loads run on the requesting thread outside the cache's map lock (see HouseholdReadCache).
+ */
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final AsyncCache<String, UserPrincipal> principals;
+
+    public PrincipalCache(UserRepository userRepository, MeterRegistry meterRegistry,
+                          @Value("${app.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${app.principal-cache.ttl:5m}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "principals");
+    }
+
+    public UserPrincipal load(String email) {
+        var mine = new CompletableFuture<UserPrincipal>();
+        var principal = principals.get(email, (key, executor) -> mine);
+        if(principal == mine) {
+            try {
+                mine.complete(userRepository.findByEmail(email)
+                        .map(user -> UserPrincipal.of(user).withHouseholdId(null))
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found")));
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e);
+                throw e;
+            }
+        }
+        UserPrincipal identity;
+        try {
+            identity = principal.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        // the committed active household, whichever instance switched it
+        return identity.withHouseholdId(userRepository.findHouseholdIdById(identity.id()));
+    }
+}
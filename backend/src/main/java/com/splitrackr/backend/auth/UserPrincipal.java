@@ -0,0 +1,53 @@
+package com.splitrackr.backend.auth;
+
+import com.splitrackr.backend.user.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the authenticated user, cached by {@link PrincipalCache} and stored
+ * in the security context so services don't re-query _user on every request.
+ *
+ * Carries no password: it only ever backs JWT-authenticated requests.
+ */
+public record UserPrincipal(Integer id, String email, Role role, Integer householdId,
+                            String firstname, String lastname) implements UserDetails {
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getRole(), user.getUserHouseholdId(),
+                user.getFirstname(), user.getLastname());
+    }
+
+    public UserPrincipal withHouseholdId(Integer householdId) {
+        return new UserPrincipal(id, email, role, householdId, firstname, lastname);
+    }
+
+    // principal of the current request
+    public static UserPrincipal current() {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if(auth == null || !(auth.getPrincipal() instanceof UserPrincipal principal)) {
+            throw new IllegalStateException("No authenticated user");
+        }
+        return principal;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -0,0 +1,24 @@
+package com.splitrackr.backend.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refuses to start with spring.threads.virtual.enabled on a JDK older than 21.
+ *
+ * Spring Boot silently ignores the switch there, but the "virtual" profile also turns on the
+ * DB limiter and raises Tomcat's connection limits on the assumption that worker threads no
+ * longer bound concurrency. On platform threads that is a misconfigured server, not a fallback.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsGuard {
+
+    public VirtualThreadsGuard() {
+        int feature = Runtime.version().feature();
+        if(feature < 21) {
+            throw new IllegalStateException("spring.threads.virtual.enabled (the \"virtual\" profile) needs Java 21+, "
+                    + "but this is Java " + feature + "; build the image with --build-arg JAVA_VERSION=21");
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package com.splitrackr.backend.expenses.controller;
 
+import com.splitrackr.backend.auth.UserPrincipal;
 import com.splitrackr.backend.expenses.dto.CreateExpenseRequest;
+import com.splitrackr.backend.expenses.dto.ExpensePageResponse;
 import com.splitrackr.backend.expenses.dto.ExpenseResponse;
+import com.splitrackr.backend.expenses.dto.ImportExpenseResponse;
 import com.splitrackr.backend.expenses.dto.UpdateExpenseRequest;
 import com.splitrackr.backend.expenses.model.Expense;
 import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import com.splitrackr.backend.expenses.service.ExpenseImportService;
 import com.splitrackr.backend.expenses.service.ExpenseService;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
 import lombok.AllArgsConstructor;
 import org.apache.coyote.Response;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -22,7 +35,12 @@ import java.util.Map;
 @AllArgsConstructor
 public class ExpenseController {
 
+    // clients may keep responses but must revalidate them with the ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final ExpenseService service;
+    private final ExpenseImportService importService;
+    private final HouseholdReadCache householdReadCache;
 
     @PostMapping
     public ResponseEntity<ExpenseResponse> createExpense(
@@ -31,16 +49,47 @@ public class ExpenseController {
         return ResponseEntity.ok(service.createExpense(request));
     }
 
+    @PostMapping(value = "/import",
+            consumes = {ExpenseImportService.TEXT_CSV, ExpenseImportService.APPLICATION_NDJSON})
+    public ResponseEntity<ImportExpenseResponse> importExpenses(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) throws IOException {
+        return ResponseEntity.ok(importService.importExpenses(body, contentType));
+    }
+
     @GetMapping("/list")
-    public ResponseEntity<List<ExpenseResponse>> getExpenses() {
-        return ResponseEntity.ok(service.listExpenses());
+    public ResponseEntity<List<ExpenseResponse>> getExpenses(WebRequest webRequest) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.listExpenses());
+    }
+
+    @GetMapping("/list/page")
+    public ResponseEntity<ExpensePageResponse> getExpensePage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") Integer limit,
+            WebRequest webRequest
+    ) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.listExpensePage(cursor, limit));
+    }
+
+    @GetMapping("/list/stream")
+    public ResponseEntity<StreamingResponseBody> streamExpenses(WebRequest webRequest) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(REVALIDATE)
+                .body(service.streamExpenses());
     }
 
     @GetMapping("/return")
     public ResponseEntity<ExpenseResponse> getExpenseById(
-            @RequestParam Integer expenseId
+            @RequestParam Integer expenseId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(service.getExpense(expenseId));
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.getExpense(expenseId));
     }
 
     @GetMapping("/returnUser")
@@ -63,4 +112,16 @@ public class ExpenseController {
         service.deleteExpense(expenseId);
         return ResponseEntity.ok(Map.of("message", "Expense has been deleted"));
     }
+
+    // written here rather than through sendError, whose error dispatch security would turn into a 403
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, String>> rejected(ResponseStatusException e) {
+        return ResponseEntity.status(e.getStatusCode()).body(Map.of("message", e.getReason()));
+    }
+
+    // answers If-None-Match from the household's data version, before any expense query runs
+    private boolean notModified(WebRequest webRequest) {
+        String etag = householdReadCache.etag("expenses", UserPrincipal.current().householdId());
+        return etag != null && webRequest.checkNotModified(etag);
+    }
 }
@@ -0,0 +1,28 @@
+package com.splitrackr.backend.expenses.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// keyset position in the (date_created, expense_id) ordering, opaque to clients
+public record ExpenseCursor(Instant dateCreated, Integer expenseId) {
+
+    public String encode() {
+        String raw = dateCreated.toString() + "|" + expenseId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.indexOf('|');
+            return new ExpenseCursor(
+                    Instant.parse(raw.substring(0, split)),
+                    Integer.valueOf(raw.substring(split + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
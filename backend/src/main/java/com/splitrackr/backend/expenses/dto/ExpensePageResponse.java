@@ -0,0 +1,17 @@
+package com.splitrackr.backend.expenses.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpensePageResponse {
+    private List<ExpenseResponse> expenses;
+    private String nextCursor; // null when there are no older expenses
+}
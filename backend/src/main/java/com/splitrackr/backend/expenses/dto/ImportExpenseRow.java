@@ -0,0 +1,23 @@
+package com.splitrackr.backend.expenses.dto;
+
+import com.splitrackr.backend.expenses.model.SplitType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportExpenseRow {
+    private String description;
+    private Integer amountCents;
+    private SplitType type;
+    private Integer payerId; // defaults to the importing user
+    private Instant dateCreated; // defaults to import time
+    private List<ExpenseShareRequest> share;
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -12,4 +14,6 @@ import lombok.NoArgsConstructor;
 public class UpdateExpenseRequest {
     private String description;
     private Integer amountCents;
+    // optional new members (and fixed amounts); omitted keeps the current members
+    private List<ExpenseShareRequest> share;
 }
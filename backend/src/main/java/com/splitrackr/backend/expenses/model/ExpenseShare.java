@@ -4,6 +4,8 @@ import com.splitrackr.backend.user.User;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -15,14 +17,25 @@ public class ExpenseShare {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer shareId;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "expense_id", nullable = false)
     private Expense expense;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
     @Column(nullable = false)
     private Integer amountCents;
+
+    // copy of expense.dateCreated, the partition key when expense_share is partitioned
+    @Column(name = "expense_date", nullable = false)
+    private Instant expenseDate;
+
+    @PrePersist
+    void onCreate() {
+        if(expenseDate == null) {
+            expenseDate = expense.getDateCreated();
+        }
+    }
 }
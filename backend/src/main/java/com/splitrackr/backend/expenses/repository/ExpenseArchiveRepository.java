@@ -0,0 +1,47 @@
+package com.splitrackr.backend.expenses.repository;
+
+import com.splitrackr.backend.expenses.model.Expense;
+import com.splitrackr.backend.expenses.model.ExpenseShare;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only access to expense_archive and expense_share_archive, mapped onto the live
+ * entities. The results are loaded read-only: they have no row in expense, so they must never
+ * be flushed.
+ */
+public interface ExpenseArchiveRepository extends org.springframework.data.repository.Repository<Expense, Integer> {
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = "SELECT * FROM expense_archive WHERE expense_id = :expenseId", nativeQuery = true)
+    Optional<Expense> findArchivedById(@Param("expenseId") Integer expenseId);
+
+    // keyset pages over archived ACTIVE expenses, same order as the hot list
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = "SELECT * FROM expense_archive WHERE household_id = :householdId AND status = 'ACTIVE' " +
+            "ORDER BY date_created DESC, expense_id DESC LIMIT :limit", nativeQuery = true)
+    List<Expense> findArchivedFirstPage(@Param("householdId") Integer householdId,
+                                        @Param("limit") int limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = "SELECT * FROM expense_archive WHERE household_id = :householdId AND status = 'ACTIVE' " +
+            "AND (date_created < :dateCreated OR (date_created = :dateCreated AND expense_id < :expenseId)) " +
+            "ORDER BY date_created DESC, expense_id DESC LIMIT :limit", nativeQuery = true)
+    List<Expense> findArchivedPageBefore(@Param("householdId") Integer householdId,
+                                         @Param("dateCreated") Instant dateCreated,
+                                         @Param("expenseId") Integer expenseId,
+                                         @Param("limit") int limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = "SELECT * FROM expense_share_archive WHERE expense_id IN (:expenseIds) ORDER BY share_id",
+            nativeQuery = true)
+    List<ExpenseShare> findArchivedShares(@Param("expenseIds") Collection<Integer> expenseIds);
+}
@@ -2,8 +2,11 @@ package com.splitrackr.backend.expenses.repository;
 
 import com.splitrackr.backend.expenses.model.Expense;
 import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -23,4 +26,61 @@ public interface ExpenseRepository extends JpaRepository<Expense, Integer> {
     List<Expense> findByHousehold_HouseholdIdAndStatusAndDateCreatedAfterOrderByDateCreatedDesc(
             Integer householdId, ExpenseStatus status, Instant dateCreated
     );
+
+    // read paths for the expense endpoints, payer and household joined into the same select
+    @EntityGraph(attributePaths = {"payer", "household"})
+    List<Expense> findWithPayerByHousehold_HouseholdIdAndStatusOrderByDateCreatedDesc(
+            Integer householdId, ExpenseStatus status
+    );
+
+    @EntityGraph(attributePaths = {"payer", "household"})
+    List<Expense> findWithPayerByPayer_IdAndStatusOrderByDateCreatedDesc(
+            Integer userId, ExpenseStatus status
+    );
+
+    @EntityGraph(attributePaths = {"payer", "household"})
+    Optional<Expense> findWithPayerByExpenseId(Integer expenseId);
+
+    // net balance per member as (user_id, paid - owed) rows, summed in the database
+    @Query(value = "SELECT t.user_id, SUM(t.cents) FROM (" +
+            "SELECT e.payer_id AS user_id, e.amount_cents AS cents FROM expense e " +
+            "WHERE e.household_id = :householdId AND e.status = 'ACTIVE' " +
+            "UNION ALL " +
+            "SELECT s.user_id, -s.amount_cents FROM expense_share s " +
+            "JOIN expense e ON e.expense_id = s.expense_id AND e.date_created = s.expense_date " +
+            "WHERE e.household_id = :householdId AND e.status = 'ACTIVE'" +
+            ") t GROUP BY t.user_id", nativeQuery = true)
+    List<Object[]> sumBalancesByHousehold(@Param("householdId") Integer householdId);
+
+    @Query(value = "SELECT t.user_id, SUM(t.cents) FROM (" +
+            "SELECT e.payer_id AS user_id, e.amount_cents AS cents FROM expense e " +
+            "WHERE e.household_id = :householdId AND e.status = 'ACTIVE' AND e.date_created > :after " +
+            "UNION ALL " +
+            "SELECT s.user_id, -s.amount_cents FROM expense_share s " +
+            "JOIN expense e ON e.expense_id = s.expense_id AND e.date_created = s.expense_date " +
+            "WHERE e.household_id = :householdId AND e.status = 'ACTIVE' AND e.date_created > :after " +
+            "AND s.expense_date > :after" + // repeated on the share side so both tables prune
+            ") t GROUP BY t.user_id", nativeQuery = true)
+    List<Object[]> sumBalancesByHouseholdAfter(@Param("householdId") Integer householdId,
+                                               @Param("after") Instant after);
+
+    // keyset pages over (date_created, expense_id), newest first
+    @Query("SELECT e FROM Expense e JOIN FETCH e.payer JOIN FETCH e.household " +
+            "WHERE e.household.householdId = :householdId AND e.status = :status " +
+            "ORDER BY e.dateCreated DESC, e.expenseId DESC")
+    List<Expense> findFirstPage(@Param("householdId") Integer householdId,
+                                @Param("status") ExpenseStatus status,
+                                Pageable pageable);
+
+    @Query("SELECT e FROM Expense e JOIN FETCH e.payer JOIN FETCH e.household " +
+            "WHERE e.household.householdId = :householdId AND e.status = :status " +
+            "AND e.dateCreated <= :dateCreated " + // plain bound so partitioned tables prune newer months
+            "AND (e.dateCreated < :dateCreated " +
+            "OR (e.dateCreated = :dateCreated AND e.expenseId < :expenseId)) " +
+            "ORDER BY e.dateCreated DESC, e.expenseId DESC")
+    List<Expense> findPageBefore(@Param("householdId") Integer householdId,
+                                 @Param("status") ExpenseStatus status,
+                                 @Param("dateCreated") Instant dateCreated,
+                                 @Param("expenseId") Integer expenseId,
+                                 Pageable pageable);
 }
@@ -2,16 +2,52 @@ package com.splitrackr.backend.expenses.repository;
 
 import com.splitrackr.backend.expenses.model.Expense;
 import com.splitrackr.backend.expenses.model.ExpenseShare;
+import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ExpenseShareRepository extends JpaRepository<ExpenseShare, Integer> {
-    List<ExpenseShare> findByExpense(Expense expense);
+    // the date lets a partitioned table go straight to the expense's month
+    @Query("SELECT s FROM ExpenseShare s WHERE s.expense = :expense AND s.expenseDate = :#{#expense.dateCreated}")
+    List<ExpenseShare> findByExpense(@Param("expense") Expense expense);
 
-    @Modifying
-    @Transactional
-    void deleteByExpense(Expense expense);
+    // all shares of a household's expenses in one select (no per-expense lookups)
+    @Query("SELECT s FROM ExpenseShare s JOIN s.expense e WHERE e.household.householdId = :householdId " +
+            "AND e.status = :status AND s.expenseDate = e.dateCreated ORDER BY s.shareId")
+    List<ExpenseShare> findByHouseholdAndExpenseStatus(@Param("householdId") Integer householdId,
+                                                       @Param("status") ExpenseStatus status);
+
+    // all shares of the expenses a user paid for in one select
+    @Query("SELECT s FROM ExpenseShare s JOIN s.expense e WHERE e.payer.id = :payerId " +
+            "AND e.status = :status AND s.expenseDate = e.dateCreated ORDER BY s.shareId")
+    List<ExpenseShare> findByPayerAndExpenseStatus(@Param("payerId") Integer payerId,
+                                                   @Param("status") ExpenseStatus status);
+
+    // shares of one page of expenses; the date range keeps a partitioned table to the page's months
+    @Query("SELECT s FROM ExpenseShare s WHERE s.expense.expenseId IN :expenseIds " +
+            "AND s.expenseDate BETWEEN :from AND :to ORDER BY s.shareId")
+    List<ExpenseShare> findPageShares(@Param("expenseIds") Collection<Integer> expenseIds,
+                                      @Param("from") Instant from,
+                                      @Param("to") Instant to);
+
+    // forward-only walk over a household's shares with their expense, payer and household,
+    // ordered like the expense list so rows of one expense arrive together
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s FROM ExpenseShare s JOIN FETCH s.expense e JOIN FETCH e.payer JOIN FETCH e.household " +
+            "WHERE e.household.householdId = :householdId AND e.status = :status AND s.expenseDate = e.dateCreated " +
+            "ORDER BY e.dateCreated DESC, e.expenseId DESC, s.shareId")
+    Stream<ExpenseShare> streamByHouseholdAndExpenseStatus(@Param("householdId") Integer householdId,
+                                                           @Param("status") ExpenseStatus status);
 }
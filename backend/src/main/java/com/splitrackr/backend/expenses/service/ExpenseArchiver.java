@@ -0,0 +1,120 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.splitrackr.backend.household.service.HouseholdReadCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves expenses and their shares that no balance reads any more into expense_archive and
+ * expense_share_archive:
+ * - soft-deleted expenses older than app.archive.deleted-after
+ * - every expense inside a settlement period that was finalized more than
+ *   app.archive.finalized-after ago (balances only ever read the period after the latest
+ *   finalized settlement)
+ *
+ * Each batch is one statement in its own transaction, so a run can stop anywhere and the next
+ * one carries on from what is left. SKIP LOCKED keeps concurrent instances (and expenses being
+ * edited) out of each other's way. Households that lose rows get their data version bumped so
+ * cached lists and ETags refresh.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class ExpenseArchiver {
+
+    private static final String DELETED_BATCH = "WITH batch AS (" +
+            "SELECT e.expense_id, e.date_created FROM expense e " +
+            "WHERE e.status = 'DELETED' AND e.date_created < ? " +
+            "LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    // expenses up to the end of the latest period that was finalized before the cutoff
+    private static final String FINALIZED_BATCH = "WITH closed AS (" +
+            "SELECT household_id, MAX(period_end) AS period_end FROM settlement " +
+            "WHERE status = 'FINALIZED' AND period_end < ? GROUP BY household_id), " +
+            "batch AS (" +
+            "SELECT e.expense_id, e.date_created FROM expense e JOIN closed c ON c.household_id = e.household_id " +
+            "WHERE e.date_created <= c.period_end " +
+            "LIMIT ? FOR UPDATE OF e SKIP LOCKED)";
+
+    // shares and expenses of the batch move in one statement, rows per household come back
+    private static final String MOVE_BATCH = ", shares AS (" +
+            "DELETE FROM expense_share s USING batch b " +
+            "WHERE s.expense_id = b.expense_id AND s.expense_date = b.date_created " +
+            "RETURNING s.share_id, s.expense_id, s.user_id, s.amount_cents, s.expense_date), " +
+            "archived_shares AS (" +
+            "INSERT INTO expense_share_archive (share_id, expense_id, user_id, amount_cents, expense_date) " +
+            "SELECT * FROM shares), " +
+            "moved AS (" +
+            "DELETE FROM expense e USING batch b " +
+            "WHERE e.expense_id = b.expense_id AND e.date_created = b.date_created " +
+            "RETURNING e.expense_id, e.household_id, e.payer_id, e.amount_cents, e.date_created, " +
+            "e.description, e.split_type, e.status), " +
+            "archived AS (" +
+            "INSERT INTO expense_archive (expense_id, household_id, payer_id, amount_cents, date_created, " +
+            "description, split_type, status) SELECT * FROM moved RETURNING household_id) " +
+            "SELECT household_id, COUNT(*) FROM archived GROUP BY household_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final HouseholdReadCache householdReadCache;
+
+    @Value("${app.archive.deleted-after:30d}")
+    private Duration deletedAfter;
+
+    @Value("${app.archive.finalized-after:365d}")
+    private Duration finalizedAfter;
+
+    @Value("${app.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.archive.max-batches:200}")
+    private int maxBatches; // per run, so one run never holds the scheduler for long
+
+    @Scheduled(initialDelayString = "${app.archive.initial-delay:PT5M}",
+            fixedDelayString = "${app.archive.interval:PT1H}")
+    public void archive() {
+        Instant now = Instant.now();
+        long deleted = drain(DELETED_BATCH, now.minus(deletedAfter));
+        long closed = drain(FINALIZED_BATCH, now.minus(finalizedAfter));
+        if(deleted + closed > 0) {
+            log.info("Archived {} deleted and {} finalized-period expenses", deleted, closed);
+        }
+    }
+
+    // run batches until one comes back short or the per-run limit is reached
+    private long drain(String select, Instant cutoff) {
+        var tx = new TransactionTemplate(transactionManager);
+        long total = 0;
+        for(int i = 0; i < maxBatches; i++) {
+            long moved = tx.execute(status -> moveBatch(select, cutoff));
+            total += moved;
+            if(moved < batchSize) break;
+        }
+        return total;
+    }
+
+    private long moveBatch(String select, Instant cutoff) {
+        List<long[]> households = jdbcTemplate.query(select + MOVE_BATCH,
+                (rs, row) -> new long[]{rs.getInt(1), rs.getLong(2)},
+                Timestamp.from(cutoff), batchSize);
+        long moved = 0;
+        for(long[] household : households) {
+            householdReadCache.markChanged((int) household[0]);
+            moved += household[1];
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,368 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.expenses.dto.ExpenseShareRequest;
+import com.splitrackr.backend.expenses.dto.ImportExpenseResponse;
+import com.splitrackr.backend.expenses.dto.ImportExpenseRow;
+import com.splitrackr.backend.expenses.model.Expense;
+import com.splitrackr.backend.expenses.model.ExpenseShare;
+import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import com.splitrackr.backend.expenses.model.SplitType;
+import com.splitrackr.backend.household.model.Household;
+import com.splitrackr.backend.household.model.HouseholdMembership;
+import com.splitrackr.backend.household.repository.HouseholdMembershipRepository;
+import com.splitrackr.backend.household.repository.HouseholdRepository;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
+import com.splitrackr.backend.settlement.service.BalanceLedgerService;
+import com.splitrackr.backend.user.User;
+import com.splitrackr.backend.user.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of expenses from CSV or NDJSON.
+ *
+ * Rows are validated against the household's members (loaded once per file), split with the
+ * same EQUAL/FIXED logic as {@link ExpenseService}, and written in JDBC batches of
+ * {@value #CHUNK_SIZE} expenses, one transaction per chunk (which also updates the balance
+ * ledger). Invalid rows are reported and skipped; a failing chunk is rolled back and all of
+ * its rows are reported.
+ *
+ * CSV needs a header naming the columns description, amountCents, type, payerId, dateCreated
+ * and shares (only description, amountCents and shares are required); a file whose header
+ * lacks one is rejected with 400 before anything is written. shares is a
+ * ';'-separated list of userId (EQUAL) or userId:cents (FIXED) entries. NDJSON lines use
+ * the {@link ImportExpenseRow} fields.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExpenseImportService {
+
+    public static final String TEXT_CSV = "text/csv";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String INSERT_EXPENSE = "INSERT INTO expense " +
+            "(household_id, payer_id, amount_cents, date_created, description, split_type, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SHARE = "INSERT INTO expense_share " +
+            "(expense_id, user_id, amount_cents, expense_date) VALUES (?, ?, ?, ?)";
+
+    private final ExpenseService expenseService;
+    private final BalanceLedgerService balanceLedgerService;
+    private final HouseholdRepository householdRepository;
+    private final HouseholdMembershipRepository householdMembershipRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final HouseholdReadCache householdReadCache;
+
+    public ImportExpenseResponse importExpenses(InputStream body, String contentType) throws IOException {
+        boolean csv = contentType != null && contentType.startsWith(TEXT_CSV);
+
+        var user = getAuthenticatedUser();
+        Integer houseId = user.householdId();
+        if(houseId == null) throw new IllegalArgumentException("No active household for user");
+        var household = householdRepository.getReferenceById(houseId);
+
+        // validate every row against one membership lookup for the whole file
+        Map<Integer, User> members = householdMembershipRepository.findAllByHousehold_HouseholdId(houseId)
+                .stream()
+                .map(HouseholdMembership::getUser)
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        var tx = new TransactionTemplate(transactionManager);
+        List<ImportExpenseResponse.RowError> errors = new ArrayList<>();
+        List<PendingExpense> chunk = new ArrayList<>(CHUNK_SIZE);
+        int imported = 0;
+
+        try (var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            int lineNo = 0;
+            Map<String, Integer> columns = null;
+            String line;
+            while((line = reader.readLine()) != null) {
+                lineNo++;
+                if(line.isBlank()) continue;
+                // without its columns no row can be read, so a bad header rejects the whole file
+                if(csv && columns == null) {
+                    columns = parseHeader(line);
+                    continue;
+                }
+                try {
+                    var row = csv ? parseCsvRow(line, columns)
+                            : objectMapper.readValue(line, ImportExpenseRow.class);
+                    chunk.add(prepare(lineNo, row, household, user, members));
+                } catch (IllegalArgumentException | IllegalStateException | JsonProcessingException e) {
+                    errors.add(rowError(lineNo, e.getMessage()));
+                }
+
+                if(chunk.size() == CHUNK_SIZE) {
+                    imported += writeChunk(tx, chunk, errors);
+                    chunk.clear();
+                }
+            }
+        }
+        if(!chunk.isEmpty()) {
+            imported += writeChunk(tx, chunk, errors);
+        }
+
+        return ImportExpenseResponse.builder()
+                .imported(imported)
+                .failed(errors.size())
+                .errors(errors)
+                .build();
+    }
+
+    // validate a row and build its (unsaved) expense and shares
+    private PendingExpense prepare(int line, ImportExpenseRow row, Household household,
+                                   UserPrincipal importer, Map<Integer, User> members) {
+        if(row.getDescription() == null || row.getDescription().isBlank()) {
+            throw new IllegalArgumentException("Missing description");
+        }
+        if(row.getAmountCents() == null || row.getAmountCents() < 0) {
+            throw new IllegalArgumentException("Missing or negative amount cents");
+        }
+        if(row.getShare() == null || row.getShare().isEmpty()) {
+            throw new IllegalArgumentException("At least one member required");
+        }
+
+        Integer payerId = row.getPayerId() != null ? row.getPayerId() : importer.id();
+        User payer = members.get(payerId);
+        if(payer == null) {
+            throw new IllegalArgumentException("Payer " + payerId + " is not a household member");
+        }
+
+        var seen = new HashSet<Integer>();
+        List<User> shareMembers = new ArrayList<>(row.getShare().size());
+        for(var share : row.getShare()) {
+            User member = members.get(share.getPayerId());
+            if(member == null) {
+                throw new IllegalArgumentException("User " + share.getPayerId() + " is not a household member");
+            }
+            if(!seen.add(member.getId())) {
+                throw new IllegalArgumentException("User " + member.getId() + " listed twice");
+            }
+            shareMembers.add(member);
+        }
+
+        var type = row.getType() != null ? row.getType() : SplitType.EQUAL;
+        var expense = Expense.builder()
+                .household(household)
+                .payer(payer)
+                .amountCents(row.getAmountCents())
+                .description(row.getDescription())
+                .splitType(type)
+                .status(ExpenseStatus.ACTIVE)
+                .dateCreated(row.getDateCreated() != null ? row.getDateCreated() : Instant.now())
+                .build();
+
+        List<ExpenseShare> shares = switch(type) {
+            case EQUAL -> expenseService.calculateEqual(expense, shareMembers, row.getAmountCents());
+            case FIXED -> expenseService.calculateFixed(expense, shareMembers, row.getShare(), row.getAmountCents());
+        };
+        return new PendingExpense(line, expense, shares);
+    }
+
+    // insert one chunk of expenses and shares as two JDBC batches in a single transaction
+    private int writeChunk(TransactionTemplate tx, List<PendingExpense> chunk,
+                           List<ImportExpenseResponse.RowError> errors) {
+        try {
+            tx.executeWithoutResult(status -> {
+                householdReadCache.markChanged(chunk.get(0).expense().getHousehold().getHouseholdId());
+                jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                    insertExpenses(con, chunk);
+                    insertShares(con, chunk);
+                    return null;
+                });
+                recordBalances(chunk);
+            });
+            return chunk.size();
+        } catch (DataAccessException e) {
+            log.warn("Expense import chunk rolled back", e);
+            String message = "Batch rolled back: " + e.getMostSpecificCause().getMessage();
+            chunk.forEach(p -> errors.add(rowError(p.line(), message)));
+            return 0;
+        }
+    }
+
+    // one ledger update for the whole chunk
+    private void recordBalances(List<PendingExpense> chunk) {
+        var delta = balanceLedgerService.newDelta(chunk.get(0).expense().getHousehold().getHouseholdId());
+        for(var pending : chunk) {
+            var e = pending.expense();
+            delta.add(e.getPayer().getId(), e.getAmountCents(), e.getDateCreated(), pending.shares(), 1);
+        }
+        balanceLedgerService.apply(delta);
+    }
+
+    private void insertExpenses(Connection con, List<PendingExpense> chunk) throws SQLException {
+        try (var ps = con.prepareStatement(INSERT_EXPENSE, new String[]{"expense_id"})) {
+            for(var pending : chunk) {
+                var e = pending.expense();
+                ps.setInt(1, e.getHousehold().getHouseholdId());
+                ps.setInt(2, e.getPayer().getId());
+                ps.setInt(3, e.getAmountCents());
+                ps.setObject(4, OffsetDateTime.ofInstant(e.getDateCreated(), ZoneOffset.UTC));
+                ps.setString(5, e.getDescription());
+                ps.setString(6, e.getSplitType().name());
+                ps.setString(7, e.getStatus().name());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            // generated keys come back in batch order
+            try (var keys = ps.getGeneratedKeys()) {
+                for(var pending : chunk) {
+                    if(!keys.next()) throw new SQLException("Missing generated expense id");
+                    pending.expense().setExpenseId(keys.getInt(1));
+                }
+            }
+        }
+    }
+
+    private void insertShares(Connection con, List<PendingExpense> chunk) throws SQLException {
+        try (var ps = con.prepareStatement(INSERT_SHARE)) {
+            for(var pending : chunk) {
+                for(var share : pending.shares()) {
+                    ps.setInt(1, pending.expense().getExpenseId());
+                    ps.setInt(2, share.getUser().getId());
+                    ps.setInt(3, share.getAmountCents());
+                    ps.setObject(4, OffsetDateTime.ofInstant(pending.expense().getDateCreated(), ZoneOffset.UTC));
+                    ps.addBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        var names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for(int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        for(String required : List.of("description", "amountCents", "shares")) {
+            if(!columns.containsKey(required)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV header is missing column " + required);
+            }
+        }
+        return columns;
+    }
+
+    private ImportExpenseRow parseCsvRow(String line, Map<String, Integer> columns) {
+        var fields = splitCsv(line);
+        try {
+            String type = field(fields, columns, "type");
+            String payerId = field(fields, columns, "payerId");
+            String amount = field(fields, columns, "amountCents");
+            String date = field(fields, columns, "dateCreated");
+
+            return ImportExpenseRow.builder()
+                    .description(field(fields, columns, "description"))
+                    .amountCents(amount == null ? null : Integer.valueOf(amount))
+                    .type(type == null ? null : SplitType.valueOf(type.toUpperCase()))
+                    .payerId(payerId == null ? null : Integer.valueOf(payerId))
+                    .dateCreated(date == null ? null : Instant.parse(date))
+                    .share(parseShares(field(fields, columns, "shares")))
+                    .build();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid dateCreated");
+        }
+    }
+
+    // "3;4;5" for EQUAL or "3:1200;4:800" for FIXED
+    private List<ExpenseShareRequest> parseShares(String value) {
+        if(value == null) return List.of();
+        List<ExpenseShareRequest> shares = new ArrayList<>();
+        for(String entry : value.split(";")) {
+            if(entry.isBlank()) continue;
+            String[] parts = entry.trim().split(":");
+            shares.add(ExpenseShareRequest.builder()
+                    .payerId(Integer.valueOf(parts[0].trim()))
+                    .amountCents(parts.length > 1 ? Integer.valueOf(parts[1].trim()) : null)
+                    .build());
+        }
+        return shares;
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if(index == null || index >= fields.size()) return null;
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // split one CSV line, honouring double-quoted fields and "" escapes
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        var current = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted) {
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if(c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if(c == '"') {
+                quoted = true;
+            } else if(c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private ImportExpenseResponse.RowError rowError(int line, String message) {
+        return ImportExpenseResponse.RowError.builder()
+                .line(line)
+                .message(message)
+                .build();
+    }
+
+    private UserPrincipal getAuthenticatedUser() {
+        return UserPrincipal.current();
+    }
+
+    private record PendingExpense(int line, Expense expense, List<ExpenseShare> shares) {}
+}
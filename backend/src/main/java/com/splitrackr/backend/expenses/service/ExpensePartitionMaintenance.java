@@ -0,0 +1,142 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.splitrackr.backend.household.service.HouseholdReadCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the month partitions of the partitioned expense and expense_share tables in step with
+ * time (see the "partitioned" profile and db/partitioned).
+ *
+ * Creates the partitions for the coming months before rows arrive, gives months that landed in
+ * the default partition (back-dated imports) their own partition, and, when a retention is set,
+ * detaches partitions that ended more than that many months ago. Detached partitions stay in
+ * the database as plain tables; they just stop being read by lists and balances.
+ *
+ * Balances read every expense after a household's latest finalized settlement, so a month is
+ * only detached once none of its active expenses is still in an open period. Households that
+ * have not settled for longer than the retention hold their months back.
+ *
+ * The check holds only the month's own partitions, in SHARE mode, so back-dated writes into the
+ * month wait while reads and every other month carry on; the parents are locked exclusively
+ * just for the DETACH itself. Households with expenses in a detached month get their data
+ * version bumped, since their cached lists still show them.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.partitions.enabled", havingValue = "true")
+public class ExpensePartitionMaintenance {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // active expenses of the partition after their household's latest finalized period
+    private static final String OPEN_PERIOD_ROWS = "SELECT EXISTS (SELECT 1 FROM %s e " +
+            "WHERE e.status = 'ACTIVE' AND NOT EXISTS (SELECT 1 FROM settlement s " +
+            "WHERE s.household_id = e.household_id AND s.status = 'FINALIZED' " +
+            "AND s.period_end >= e.date_created))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final HouseholdReadCache householdReadCache;
+
+    @Value("${app.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.partitions.retention-months:0}")
+    private int retentionMonths; // 0 keeps every partition attached
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.partitions.cron:0 15 3 * * *}", zone = "UTC")
+    public void maintain() {
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        for(int i = 0; i <= monthsAhead; i++) {
+            ensurePartition(now.plusMonths(i));
+        }
+
+        // back-dated rows that fell into the default partition
+        List<LocalDate> stray = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', date_created AT TIME ZONE 'UTC')::date FROM expense_default",
+                LocalDate.class);
+        for(LocalDate month : stray) {
+            ensurePartition(YearMonth.from(month));
+        }
+
+        if(retentionMonths > 0) {
+            detachOlderThan(now.minusMonths(retentionMonths));
+        }
+    }
+
+    private void ensurePartition(YearMonth month) {
+        String name = jdbcTemplate.queryForObject("SELECT ensure_expense_partition(?)", String.class,
+                month.atDay(1));
+        log.debug("Expense partition {} in place", name);
+    }
+
+    // detach month partitions that end on or before the start of the given month
+    private void detachOlderThan(YearMonth oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'expense'::regclass AND c.relname ~ '^expense_p[0-9]{6}$' " +
+                        "ORDER BY c.relname",
+                String.class);
+        String cutoff = oldestKept.format(SUFFIX);
+        var tx = new TransactionTemplate(transactionManager);
+        for(String partition : partitions) {
+            String suffix = partition.substring("expense_p".length());
+            if(suffix.compareTo(cutoff) >= 0) break;
+            boolean detached;
+            try {
+                detached = Boolean.TRUE.equals(tx.execute(status -> detach(suffix)));
+            } catch (DataAccessException e) {
+                log.warn("Could not detach expense partitions for {}, retrying on the next run", suffix, e);
+                continue;
+            }
+            if(detached) {
+                log.info("Detached expense partitions for {}", suffix);
+            } else {
+                log.info("Keeping expense partitions for {}: they hold expenses of unsettled periods", suffix);
+            }
+        }
+    }
+
+    // one month, in the caller's transaction; false when it still holds open-period expenses
+    private boolean detach(String suffix) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+        // the month alone, in the order writers take it: inserts and updates into it wait, reads do not
+        jdbcTemplate.execute("LOCK TABLE expense_p" + suffix + ", expense_share_p" + suffix + " IN SHARE MODE");
+        if(Boolean.TRUE.equals(jdbcTemplate.queryForObject(OPEN_PERIOD_ROWS.formatted("expense_p" + suffix), Boolean.class))) {
+            return false;
+        }
+
+        // their cached lists and ETags still include the month's expenses
+        List<Integer> households = jdbcTemplate.queryForList(
+                "SELECT DISTINCT household_id FROM expense_p" + suffix + " ORDER BY household_id", Integer.class);
+        households.forEach(householdReadCache::markChanged);
+
+        // the parents only for the detach itself; shares reference the expenses, so they go first
+        jdbcTemplate.execute("ALTER TABLE expense_share DETACH PARTITION expense_share_p" + suffix);
+        jdbcTemplate.execute("ALTER TABLE expense DETACH PARTITION expense_p" + suffix);
+        return true;
+    }
+}
@@ -1,33 +1,52 @@
 package com.splitrackr.backend.expenses.service;
 
+import com.splitrackr.backend.auth.UserPrincipal;
 import com.splitrackr.backend.expenses.dto.*;
 import com.splitrackr.backend.expenses.model.Expense;
 import com.splitrackr.backend.expenses.model.ExpenseShare;
 import com.splitrackr.backend.expenses.model.ExpenseStatus;
 import com.splitrackr.backend.expenses.model.SplitType;
+import com.splitrackr.backend.expenses.repository.ExpenseArchiveRepository;
 import com.splitrackr.backend.expenses.repository.ExpenseRepository;
 import com.splitrackr.backend.expenses.repository.ExpenseShareRepository;
 import com.splitrackr.backend.household.model.Household;
 import com.splitrackr.backend.household.repository.HouseholdMembershipRepository;
 import com.splitrackr.backend.household.repository.HouseholdRepository;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
 import com.splitrackr.backend.household.service.HouseholdService;
+import com.splitrackr.backend.settlement.service.BalanceLedgerService;
 import com.splitrackr.backend.user.User;
 import com.splitrackr.backend.user.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("splitrackr.service")
 @RequiredArgsConstructor
 public class ExpenseService {
 
@@ -38,12 +57,23 @@ public class ExpenseService {
     private final UserRepository userRepository;
     private final HouseholdMembershipRepository householdMembershipRepository;
     private final ExpenseShareRepository expenseShareRepository;
+    private final ExpenseArchiveRepository expenseArchiveRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final HouseholdReadCache householdReadCache;
+
+    private static final int MAX_PAGE_SIZE = 200;
+    // expenses written between persistence context clears while streaming
+    private static final int STREAM_FLUSH_EVERY = 500;
 
     @Transactional
     public ExpenseResponse createExpense(CreateExpenseRequest request) {
         var user = getAuthenticatedUser();
 
-        var hh = householdRepository.findById(user.getUserHouseholdId()).orElseThrow();
+        var hh = householdRepository.findById(user.householdId()).orElseThrow();
+        householdReadCache.markChanged(hh.getHouseholdId());
 
         // get all house member's ids
         List<Integer> memberIds = request.getShare().stream()
@@ -62,7 +92,7 @@ public class ExpenseService {
 
         var expense = Expense.builder()
                 .amountCents(request.getAmountCents())
-                .payer(user)
+                .payer(userRepository.getReferenceById(user.id()))
                 .status(ExpenseStatus.ACTIVE)
                 .description(request.getDescription())
                 .household(hh)
@@ -75,6 +105,7 @@ public class ExpenseService {
             case FIXED -> calculateFixed(expense, members, request.getShare(), request.getAmountCents());
         };
         expenseShareRepository.saveAll(shares);
+        balanceLedgerService.recordExpense(expense, shares);
 
         // build response for shares
         var shareResponse = shares.stream()
@@ -97,8 +128,71 @@ public class ExpenseService {
                 .build();
     }
 
+    // members named in an update, all of which must exist
+    private List<User> findMembers(List<ExpenseShareRequest> shares) {
+        List<Integer> memberIds = shares.stream().map(ExpenseShareRequest::getPayerId).toList();
+        if(memberIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one member required");
+        }
+        List<User> members = userRepository.findAllById(memberIds);
+        if(memberIds.size() != members.size()) {
+            throw new IllegalArgumentException("At least one member wasn't found");
+        }
+        return members;
+    }
+
+    // new fixed amounts from the request, or the current ones if the total is unchanged
+    private List<ExpenseShareRequest> fixedAmounts(UpdateExpenseRequest request, List<ExpenseShare> existingShares,
+                                                   int previousAmount) {
+        if(request.getShare() != null) return request.getShare();
+        if(request.getAmountCents() != null && request.getAmountCents() != previousAmount) {
+            throw new IllegalArgumentException("New fixed amounts required when the amount changes");
+        }
+        return existingShares.stream()
+                .map(share -> ExpenseShareRequest.builder()
+                        .payerId(share.getUser().getId())
+                        .amountCents(share.getAmountCents())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Brings an expense's share rows to the target vector with as few writes as possible:
+     * changed amounts are updated in place (dirty checking, batched at flush), new members
+     * inserted and removed members deleted in one statement. Unchanged rows are not touched.
+     *
+     * @return the shares the expense has afterwards, ordered by user id
+     */
+    private List<ExpenseShare> applyShareDiff(List<ExpenseShare> existingShares, List<ExpenseShare> targetShares) {
+        Map<Integer, ExpenseShare> existingByUser = new HashMap<>();
+        for(var share : existingShares) {
+            existingByUser.put(share.getUser().getId(), share);
+        }
+
+        List<ExpenseShare> result = new ArrayList<>(targetShares.size());
+        List<ExpenseShare> inserts = new ArrayList<>();
+        for(var target : targetShares) {
+            var existing = existingByUser.remove(target.getUser().getId());
+            if(existing == null) {
+                inserts.add(target);
+                result.add(target);
+            } else {
+                if(!existing.getAmountCents().equals(target.getAmountCents())) {
+                    existing.setAmountCents(target.getAmountCents());
+                }
+                result.add(existing);
+            }
+        }
+
+        if(!existingByUser.isEmpty()) {
+            expenseShareRepository.deleteAllInBatch(existingByUser.values());
+        }
+        expenseShareRepository.saveAll(inserts);
+        return result;
+    }
+
     // helper function for equal split
-    private List<ExpenseShare> calculateEqual(Expense expense, List<User> members, Integer amountCents) {
+    List<ExpenseShare> calculateEqual(Expense expense, List<User> members, Integer amountCents) {
         // sort users by id
         var sort = members.stream()
                 .sorted(Comparator.comparing(User::getId))
@@ -123,7 +217,7 @@ public class ExpenseService {
     }
 
     // helper function for fixed split
-    private List<ExpenseShare> calculateFixed(Expense expense, List<User> members, List<ExpenseShareRequest> shares, Integer amountCents) {
+    List<ExpenseShare> calculateFixed(Expense expense, List<User> members, List<ExpenseShareRequest> shares, Integer amountCents) {
 
         // map each user to their fixed cents amount in the request
         var fixedAmt = shares.stream().collect(
@@ -158,46 +252,145 @@ public class ExpenseService {
         return output;
     }
 
-    @Transactional
+    // not transactional: the read cache opens its own transaction for the computation
     public List<ExpenseResponse> listExpenses() {
         var user = getAuthenticatedUser();
-        Integer houseId = user.getUserHouseholdId();
+        Integer houseId = user.householdId();
         if(houseId == null) throw new IllegalArgumentException("No active household for user");
 
-        var hh = householdRepository.findById(user.getUserHouseholdId()).orElseThrow();
-        List<Expense> expenses = expenseRepository.findByHousehold_HouseholdIdAndStatusOrderByDateCreatedDesc(
-                hh.getHouseholdId(),  ExpenseStatus.ACTIVE
-        );
+        return householdReadCache.get("expenses", houseId, () -> {
+            // expenses (with payer + household) and their shares in two selects
+            List<Expense> expenses = expenseRepository.findWithPayerByHousehold_HouseholdIdAndStatusOrderByDateCreatedDesc(
+                    houseId, ExpenseStatus.ACTIVE
+            );
+            var shares = groupShares(expenseShareRepository.findByHouseholdAndExpenseStatus(
+                    houseId, ExpenseStatus.ACTIVE
+            ));
+
+            return expenses.stream()
+                    .map(e -> mapToExpenseResponse(e, shares.getOrDefault(e.getExpenseId(), List.of())))
+                    .toList();
+        });
+    }
 
-        return expenses.stream()
-                .map(e -> ExpenseResponse.builder()
-                        .description(e.getDescription())
-                        .payer(mapToUserDto(e.getPayer()))
-                        .status(e.getStatus())
-                        .id(e.getExpenseId())
-                        .type(e.getSplitType())
-                        .amountCents(e.getAmountCents())
-                        .shares(expenseShareRepository.findByExpense(e)
-                                .stream()
-                                .map(s -> ExpenseShareResponse.builder()
-                                        .shareId(s.getShareId())
-                                        .userId(s.getUser().getId())
-                                        .amountCents(s.getAmountCents())
-                                        .build())
-                                .toList()
-                        )
-                        .household(mapToHouseholdDto(e.getHousehold()))
-                        .build())
-                .toList();
+    @Transactional(readOnly = true)
+    public ExpensePageResponse listExpensePage(String cursor, int limit) {
+        var user = getAuthenticatedUser();
+        Integer houseId = user.householdId();
+        if(houseId == null) throw new IllegalArgumentException("No active household for user");
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // fetch one extra row to know whether an older page exists
+        var page = PageRequest.of(0, limit + 1);
+        var position = cursor == null || cursor.isBlank() ? null : ExpenseCursor.decode(cursor);
+        List<Expense> expenses = position == null
+                ? expenseRepository.findFirstPage(houseId, ExpenseStatus.ACTIVE, page)
+                : expenseRepository.findPageBefore(houseId, ExpenseStatus.ACTIVE,
+                        position.dateCreated(), position.expenseId(), page);
+
+        // archived rows can be newer than hot ones (back-dated imports, rows the archiver skipped),
+        // so the archive is read from the same cursor every time and merged by (date, id)
+        List<Expense> archived = position == null
+                ? expenseArchiveRepository.findArchivedFirstPage(houseId, limit + 1)
+                : expenseArchiveRepository.findArchivedPageBefore(houseId,
+                        position.dateCreated(), position.expenseId(), limit + 1);
+        if(!archived.isEmpty()) {
+            expenses = new ArrayList<>(expenses);
+            expenses.addAll(archived);
+            expenses.sort(Comparator.comparing(Expense::getDateCreated)
+                    .thenComparing(Expense::getExpenseId).reversed());
+        }
+        Set<Integer> archivedIds = archived.stream().map(Expense::getExpenseId).collect(Collectors.toSet());
+
+        boolean hasMore = expenses.size() > limit;
+        if(hasMore) expenses = expenses.subList(0, limit);
+
+        var shares = new HashMap<Integer, List<ExpenseShareResponse>>();
+        var hot = expenses.stream().filter(e -> !archivedIds.contains(e.getExpenseId())).toList();
+        if(!hot.isEmpty()) {
+            shares.putAll(groupShares(expenseShareRepository.findPageShares(
+                    hot.stream().map(Expense::getExpenseId).toList(),
+                    hot.get(hot.size() - 1).getDateCreated(), hot.get(0).getDateCreated())));
+        }
+        var cold = expenses.stream().map(Expense::getExpenseId).filter(archivedIds::contains).toList();
+        if(!cold.isEmpty()) {
+            shares.putAll(groupShares(expenseArchiveRepository.findArchivedShares(cold)));
+        }
+
+        String nextCursor = null;
+        if(hasMore) {
+            var last = expenses.get(expenses.size() - 1);
+            nextCursor = new ExpenseCursor(last.getDateCreated(), last.getExpenseId()).encode();
+        }
+
+        return ExpensePageResponse.builder()
+                .expenses(expenses.stream()
+                        .map(e -> mapToExpenseResponse(e, shares.getOrDefault(e.getExpenseId(), List.of())))
+                        .toList())
+                .nextCursor(nextCursor)
+                .build();
     }
 
-    @Transactional
+    // writes the whole household history as a JSON array without holding it in memory
+    public StreamingResponseBody streamExpenses() {
+        var user = getAuthenticatedUser();
+        Integer houseId = user.householdId();
+        if(houseId == null) throw new IllegalArgumentException("No active household for user");
+
+        var tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return out -> tx.executeWithoutResult(status -> writeExpenses(houseId, out));
+    }
+
+    private void writeExpenses(Integer houseId, OutputStream out) {
+        var writer = objectMapper.writerFor(ExpenseResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (var rows = expenseShareRepository.streamByHouseholdAndExpenseStatus(houseId, ExpenseStatus.ACTIVE);
+             var gen = objectMapper.getFactory().createGenerator(out)
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            gen.writeStartArray();
+
+            Expense current = null;
+            List<ExpenseShareResponse> shares = new ArrayList<>();
+            int written = 0;
+            var it = rows.iterator();
+            while(it.hasNext()) {
+                var share = it.next();
+                var expense = share.getExpense();
+                // rows arrive grouped by expense, emit the previous one once its id changes
+                if(current != null && !current.getExpenseId().equals(expense.getExpenseId())) {
+                    writer.writeValue(gen, mapToExpenseResponse(current, shares));
+                    shares = new ArrayList<>();
+                    if(++written % STREAM_FLUSH_EVERY == 0) {
+                        gen.flush();
+                        entityManager.clear(); // keep the persistence context from growing
+                    }
+                }
+                current = expense;
+                shares.add(mapToShareResponse(share));
+            }
+            if(current != null) {
+                writer.writeValue(gen, mapToExpenseResponse(current, shares));
+            }
+
+            gen.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public ExpenseResponse getExpense(Integer expenseId) {
         var user = getAuthenticatedUser();
 
-        var expense =  expenseRepository.findById(expenseId).orElseThrow();
+        // expenses from long-closed periods only exist in the archive
+        var hot = expenseRepository.findWithPayerByExpenseId(expenseId);
+        var expense = hot.or(() -> expenseArchiveRepository.findArchivedById(expenseId)).orElseThrow();
 
-        if(!expense.getHousehold().getHouseholdId().equals(user.getUserHouseholdId())) {
+        if(!expense.getHousehold().getHouseholdId().equals(user.householdId())) {
             throw new AccessDeniedException("You are not allowed to view this expense");
         }
 
@@ -205,24 +398,13 @@ public class ExpenseService {
             throw new IllegalArgumentException("Expense not found");
         }
 
-        var shares = expenseShareRepository.findByExpense(expense).stream()
-                .map(s -> ExpenseShareResponse.builder()
-                .shareId(s.getShareId())
-                        .userId(s.getUser().getId())
-                        .amountCents(s.getAmountCents())
-                                .build())
+        var shares = (hot.isPresent()
+                ? expenseShareRepository.findByExpense(expense)
+                : expenseArchiveRepository.findArchivedShares(List.of(expenseId))).stream()
+                .map(this::mapToShareResponse)
                 .toList();
 
-        return ExpenseResponse.builder()
-                .description(expense.getDescription())
-                .payer(mapToUserDto(expense.getPayer()))
-                .status(expense.getStatus())
-                .id(expenseId)
-                .type(expense.getSplitType())
-                .amountCents(expense.getAmountCents())
-                .shares(shares)
-                .household(mapToHouseholdDto(expense.getHousehold()))
-                .build();
+        return mapToExpenseResponse(expense, shares);
     }
 
     @Transactional
@@ -231,33 +413,36 @@ public class ExpenseService {
 
         var expense =  expenseRepository.findById(expenseId).orElseThrow();
 
-        if(!expense.getHousehold().getHouseholdId().equals(user.getUserHouseholdId())) {
+        if(!expense.getHousehold().getHouseholdId().equals(user.householdId())) {
             throw new AccessDeniedException("You are not allowed to view this expense");
         }
 
         if (expense.getStatus() == ExpenseStatus.DELETED) {
             throw new IllegalArgumentException("Expense not found");
         }
+        householdReadCache.markChanged(user.householdId());
 
-        expense.setAmountCents(request.getAmountCents());
-        expense.setDescription(request.getDescription());
-        expenseRepository.save(expense);
+        int previousAmount = expense.getAmountCents();
+        if(request.getAmountCents() != null) expense.setAmountCents(request.getAmountCents());
+        if(request.getDescription() != null) expense.setDescription(request.getDescription());
 
-        // get existing shares to find the users
+        // share vector the expense should end up with, in its original split type
         List<ExpenseShare> existingShares = expenseShareRepository.findByExpense(expense);
-        List<User> members = existingShares.stream()
-                .map(ExpenseShare::getUser)
-                .toList();
-
-        // delete the previous shares
-        expenseShareRepository.deleteByExpense(expense);
-
-        // recalculate shares
-        List<ExpenseShare> newShares = switch(expense.getSplitType()) {
-            case EQUAL, FIXED -> calculateEqual(expense, members, request.getAmountCents());
+        List<User> members = request.getShare() != null
+                ? findMembers(request.getShare())
+                : existingShares.stream().map(ExpenseShare::getUser).toList();
+        List<ExpenseShare> targetShares = switch(expense.getSplitType()) {
+            case EQUAL -> calculateEqual(expense, members, expense.getAmountCents());
+            case FIXED -> calculateFixed(expense, members, fixedAmounts(request, existingShares, previousAmount),
+                    expense.getAmountCents());
         };
 
-        expenseShareRepository.saveAll(newShares);
+        // ledger needs the old amounts, and the diff below updates shares in place
+        List<ExpenseShare> previousShares = existingShares.stream()
+                .map(share -> ExpenseShare.builder().user(share.getUser()).amountCents(share.getAmountCents()).build())
+                .toList();
+        List<ExpenseShare> newShares = applyShareDiff(existingShares, targetShares);
+        balanceLedgerService.reviseExpense(expense, previousAmount, previousShares, newShares);
 
         // Build response
         var shares = newShares.stream()
@@ -285,29 +470,16 @@ public class ExpenseService {
     public List<ExpenseResponse> getUserExpenses() {
         var user = getAuthenticatedUser();
 
-        List<Expense> expenses = expenseRepository.findByPayer_IdAndStatusOrderByDateCreatedDesc(
-                user.getId(), ExpenseStatus.ACTIVE
+        // expenses (with payer + household) and their shares in two selects
+        List<Expense> expenses = expenseRepository.findWithPayerByPayer_IdAndStatusOrderByDateCreatedDesc(
+                user.id(), ExpenseStatus.ACTIVE
         );
+        var shares = groupShares(expenseShareRepository.findByPayerAndExpenseStatus(
+                user.id(), ExpenseStatus.ACTIVE
+        ));
 
         return expenses.stream()
-                .map(e -> ExpenseResponse.builder()
-                        .description(e.getDescription())
-                        .payer(mapToUserDto(e.getPayer()))
-                        .status(e.getStatus())
-                        .id(e.getExpenseId())
-                        .type(e.getSplitType())
-                        .amountCents(e.getAmountCents())
-                        .shares(expenseShareRepository.findByExpense(e)
-                                .stream()
-                                .map(s -> ExpenseShareResponse.builder()
-                                        .shareId(s.getShareId())
-                                        .userId(s.getUser().getId())
-                                        .amountCents(s.getAmountCents())
-                                        .build())
-                                .toList()
-                        )
-                        .household(mapToHouseholdDto(e.getHousehold()))
-                        .build())
+                .map(e -> mapToExpenseResponse(e, shares.getOrDefault(e.getExpenseId(), List.of())))
                 .toList();
     }
 
@@ -317,14 +489,50 @@ public class ExpenseService {
 
         var expense = expenseRepository.findById(expenseId).orElseThrow();
 
-        if(!expense.getHousehold().getHouseholdId().equals(user.getUserHouseholdId())) {
+        if(!expense.getHousehold().getHouseholdId().equals(user.householdId())) {
             throw new AccessDeniedException("You are not allowed to view this expense");
         }
+        householdReadCache.markChanged(user.householdId());
+
+        // only an active expense still counts towards balances
+        if(expense.getStatus() == ExpenseStatus.ACTIVE) {
+            balanceLedgerService.removeExpense(expense, expenseShareRepository.findByExpense(expense));
+        }
 
         expense.setStatus(ExpenseStatus.DELETED);
         expenseRepository.save(expense);
     }
 
+    // helper for expense dto
+    private ExpenseResponse mapToExpenseResponse(Expense expense, List<ExpenseShareResponse> shares) {
+        return ExpenseResponse.builder()
+                .description(expense.getDescription())
+                .payer(mapToUserDto(expense.getPayer()))
+                .status(expense.getStatus())
+                .id(expense.getExpenseId())
+                .type(expense.getSplitType())
+                .amountCents(expense.getAmountCents())
+                .shares(shares)
+                .household(mapToHouseholdDto(expense.getHousehold()))
+                .build();
+    }
+
+    // helper for share dto (user id is read off the lazy reference, no extra select)
+    private ExpenseShareResponse mapToShareResponse(ExpenseShare share) {
+        return ExpenseShareResponse.builder()
+                .shareId(share.getShareId())
+                .userId(share.getUser().getId())
+                .amountCents(share.getAmountCents())
+                .build();
+    }
+
+    // group a batch of shares by their expense id, keeping share order
+    private Map<Integer, List<ExpenseShareResponse>> groupShares(List<ExpenseShare> shares) {
+        return shares.stream().collect(Collectors.groupingBy(
+                s -> s.getExpense().getExpenseId(),
+                Collectors.mapping(this::mapToShareResponse, Collectors.toList())));
+    }
+
     // helper for expense dto
     private ExpenseResponse.HouseholdDto mapToHouseholdDto(Household household) {
         return ExpenseResponse.HouseholdDto.builder()
@@ -344,9 +552,7 @@ public class ExpenseService {
     }
 
     // helper for authenticating user
-    private User getAuthenticatedUser() {
-        var auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        return userRepository.findByEmail(email).orElseThrow();
+    private UserPrincipal getAuthenticatedUser() {
+        return UserPrincipal.current();
     }
 }
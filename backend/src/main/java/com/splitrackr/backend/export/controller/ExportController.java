@@ -0,0 +1,73 @@
+package com.splitrackr.backend.export.controller;
+
+import com.splitrackr.backend.expenses.service.ExpenseImportService;
+import com.splitrackr.backend.export.service.ExportService;
+import com.splitrackr.backend.export.service.ExportService.ExportFormat;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/v1/export")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private final ExportService service;
+
+    @GetMapping("/expenses")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        var exportFormat = ExportFormat.fromParam(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return download("expenses", exportFormat, gzip, service.exportExpenses(exportFormat, gzip));
+    }
+
+    @GetMapping("/settlements")
+    public ResponseEntity<StreamingResponseBody> exportSettlements(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        var exportFormat = ExportFormat.fromParam(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return download("settlements", exportFormat, gzip, service.exportSettlements(exportFormat, gzip));
+    }
+
+    private ResponseEntity<StreamingResponseBody> download(String name, ExportFormat format, boolean gzip,
+                                                           StreamingResponseBody body) {
+        boolean csv = format == ExportFormat.CSV;
+        var builder = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(
+                        (csv ? ExpenseImportService.TEXT_CSV : ExpenseImportService.APPLICATION_NDJSON) + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + (csv ? ".csv" : ".ndjson"))
+                        .build()
+                        .toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noStore());
+        if(gzip) builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return builder.body(body);
+    }
+
+    // gzip unless the client didn't list it or turned it off with q=0
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null) return false;
+        for(String part : acceptEncoding.split(",")) {
+            String[] coding = part.trim().split(";");
+            if(coding[0].trim().equalsIgnoreCase("gzip")) {
+                return coding.length < 2 || !coding[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
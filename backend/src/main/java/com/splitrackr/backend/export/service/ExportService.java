@@ -0,0 +1,287 @@
+package com.splitrackr.backend.export.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.splitrackr.backend.auth.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full household exports straight from a forward-only JDBC cursor.
+ *
+ * Rows are read in fetch-size batches inside one read-only transaction (Postgres only uses a
+ * server-side cursor when autocommit is off) and written as they arrive. No entities are
+ * loaded, so heap use does not depend on the number of rows.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // one row per share; expenses without shares still get one row. Archived expenses are
+    // part of the full history, so both tables are read.
+    private static final String EXPENSE_ROWS = "SELECT e.expense_id, e.date_created, e.description, " +
+            "e.amount_cents, e.split_type, e.status, e.payer_id, " +
+            "s.share_id, s.user_id, s.amount_cents AS share_cents FROM (" +
+            "SELECT expense_id, date_created, description, amount_cents, split_type, status, payer_id " +
+            "FROM expense WHERE household_id = ? " +
+            "UNION ALL " +
+            "SELECT expense_id, date_created, description, amount_cents, split_type, status, payer_id " +
+            "FROM expense_archive WHERE household_id = ?" +
+            ") e LEFT JOIN (" +
+            "SELECT share_id, expense_id, user_id, amount_cents, expense_date FROM expense_share " +
+            "UNION ALL " +
+            "SELECT share_id, expense_id, user_id, amount_cents, expense_date FROM expense_share_archive" +
+            ") s ON s.expense_id = e.expense_id AND s.expense_date = e.date_created " +
+            "ORDER BY e.date_created, e.expense_id, s.share_id";
+
+    // balances then transfers for each settlement, user_id is the payer for transfers
+    private static final String SETTLEMENT_ROWS = "SELECT * FROM (" +
+            "SELECT st.settlement_id, st.status, st.period_start, st.period_end, st.created_at, " +
+            "st.created_by_id, 'balance' AS kind, b.user_id, NULL AS to_user_id, b.net_cents AS amount_cents " +
+            "FROM settlement st JOIN settlement_balance b ON b.settlement_id = st.settlement_id " +
+            "WHERE st.household_id = ? " +
+            "UNION ALL " +
+            "SELECT st.settlement_id, st.status, st.period_start, st.period_end, st.created_at, " +
+            "st.created_by_id, 'transfer', t.from_user_id, t.to_user_id, t.amount_cents " +
+            "FROM settlement st JOIN settlement_transfer t ON t.settlement_id = st.settlement_id " +
+            "WHERE st.household_id = ?" +
+            ") rows ORDER BY settlement_id, kind, user_id, to_user_id";
+
+    private static final String EXPENSE_CSV_HEADER = "expense_id,date_created,description,amount_cents," +
+            "split_type,status,payer_id,share_id,share_user_id,share_amount_cents";
+    private static final String SETTLEMENT_CSV_HEADER = "settlement_id,status,period_start,period_end," +
+            "created_at,created_by_id,kind,user_id,to_user_id,amount_cents";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    public StreamingResponseBody exportExpenses(ExportFormat format, boolean gzip) {
+        Integer houseId = activeHousehold();
+        return stream(gzip, out -> {
+            if(format == ExportFormat.CSV) {
+                writeCsv(out, EXPENSE_CSV_HEADER, EXPENSE_ROWS, houseId, 2, 10);
+            } else {
+                writeExpenseJson(out, houseId);
+            }
+        });
+    }
+
+    public StreamingResponseBody exportSettlements(ExportFormat format, boolean gzip) {
+        Integer houseId = activeHousehold();
+        return stream(gzip, out -> {
+            if(format == ExportFormat.CSV) {
+                writeCsv(out, SETTLEMENT_CSV_HEADER, SETTLEMENT_ROWS, houseId, 2, 10);
+            } else {
+                writeSettlementJson(out, houseId);
+            }
+        });
+    }
+
+    // run the writer in a read-only transaction, gzipping on the fly if asked
+    private StreamingResponseBody stream(boolean gzip, ExportWriter writer) {
+        var tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return out -> tx.executeWithoutResult(status -> {
+            try {
+                // the servlet stream is closed by the container, not by us
+                OutputStream sink = new FilterOutputStream(out) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                };
+                if(gzip) sink = new GZIPOutputStream(sink, BUFFER_SIZE);
+                try (Writer text = new BufferedWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                    writer.write(text);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // every column of every row, in select order
+    private void writeCsv(Writer out, String header, String sql, Integer houseId,
+                          int householdParams, int columns) throws IOException {
+        out.write(header);
+        out.write('\n');
+        query(sql, houseId, householdParams, rs -> {
+            for(int i = 1; i <= columns; i++) {
+                if(i > 1) out.write(',');
+                out.write(csvField(rs.getObject(i)));
+            }
+            out.write('\n');
+        });
+    }
+
+    // one JSON object per expense, its shares nested
+    private void writeExpenseJson(Writer out, Integer houseId) throws IOException {
+        try (var gen = ndjsonGenerator(out)) {
+            var current = new long[]{-1};
+            query(EXPENSE_ROWS, houseId, 2, rs -> {
+                int expenseId = rs.getInt("expense_id");
+                if(expenseId != current[0]) {
+                    if(current[0] != -1) endObject(gen);
+                    current[0] = expenseId;
+                    gen.writeStartObject();
+                    gen.writeNumberField("expenseId", expenseId);
+                    gen.writeStringField("dateCreated", instant(rs.getTimestamp("date_created")));
+                    gen.writeStringField("description", rs.getString("description"));
+                    gen.writeNumberField("amountCents", rs.getInt("amount_cents"));
+                    gen.writeStringField("type", rs.getString("split_type"));
+                    gen.writeStringField("status", rs.getString("status"));
+                    gen.writeNumberField("payerId", rs.getInt("payer_id"));
+                    gen.writeArrayFieldStart("shares");
+                }
+                int shareId = rs.getInt("share_id");
+                if(!rs.wasNull()) {
+                    gen.writeStartObject();
+                    gen.writeNumberField("shareId", shareId);
+                    gen.writeNumberField("userId", rs.getInt("user_id"));
+                    gen.writeNumberField("amountCents", rs.getInt("share_cents"));
+                    gen.writeEndObject();
+                }
+            });
+            if(current[0] != -1) endObject(gen);
+        }
+    }
+
+    // one JSON object per settlement, its balances and transfers nested
+    private void writeSettlementJson(Writer out, Integer houseId) throws IOException {
+        try (var gen = ndjsonGenerator(out)) {
+            var current = new long[]{-1};
+            var section = new String[1];
+            query(SETTLEMENT_ROWS, houseId, 2, rs -> {
+                int settlementId = rs.getInt("settlement_id");
+                if(settlementId != current[0]) {
+                    if(current[0] != -1) endObject(gen);
+                    current[0] = settlementId;
+                    section[0] = null;
+                    gen.writeStartObject();
+                    gen.writeNumberField("settlementId", settlementId);
+                    gen.writeStringField("status", rs.getString("status"));
+                    gen.writeStringField("periodStart", instant(rs.getTimestamp("period_start")));
+                    gen.writeStringField("periodEnd", instant(rs.getTimestamp("period_end")));
+                    gen.writeStringField("createdAt", instant(rs.getTimestamp("created_at")));
+                    gen.writeNumberField("createdById", rs.getInt("created_by_id"));
+                }
+                String kind = rs.getString("kind");
+                if(!kind.equals(section[0])) {
+                    if(section[0] != null) gen.writeEndArray();
+                    section[0] = kind;
+                    gen.writeArrayFieldStart(kind.equals("balance") ? "balances" : "transfers");
+                }
+                gen.writeStartObject();
+                if(kind.equals("balance")) {
+                    gen.writeNumberField("userId", rs.getInt("user_id"));
+                    gen.writeNumberField("netCents", rs.getInt("amount_cents"));
+                } else {
+                    gen.writeNumberField("fromUserId", rs.getInt("user_id"));
+                    gen.writeNumberField("toUserId", rs.getInt("to_user_id"));
+                    gen.writeNumberField("amountCents", rs.getInt("amount_cents"));
+                }
+                gen.writeEndObject();
+            });
+            if(current[0] != -1) endObject(gen);
+        }
+    }
+
+    private JsonGenerator ndjsonGenerator(Writer out) throws IOException {
+        var gen = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.setRootValueSeparator(null); // endObject writes the newline
+        return gen;
+    }
+
+    // close the open array and object, one object per line
+    private static void endObject(JsonGenerator gen) throws IOException {
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    // forward-only, read-only cursor fetched FETCH_SIZE rows at a time
+    private void query(String sql, Integer houseId, int householdParams, RowWriter rowWriter) {
+        PreparedStatementCreator statement = con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            for(int i = 1; i <= householdParams; i++) ps.setInt(i, houseId);
+            return ps;
+        };
+        jdbcTemplate.query(statement, rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String csvField(Object value) {
+        if(value == null) return "";
+        String text = value instanceof Timestamp ts ? ts.toInstant().toString() : value.toString();
+        if(text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private static String instant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant().toString();
+    }
+
+    private Integer activeHousehold() {
+        Integer houseId = UserPrincipal.current().householdId();
+        if(houseId == null) throw new IllegalArgumentException("No active household for user");
+        return houseId;
+    }
+
+    public enum ExportFormat {
+        CSV, NDJSON;
+
+        public static ExportFormat fromParam(String value) {
+            for(var format : values()) {
+                if(format.name().equalsIgnoreCase(value)) return format;
+            }
+            throw new IllegalArgumentException("Unknown export format: " + value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -1,15 +1,19 @@
 package com.splitrackr.backend.household.controller;
 
+import com.splitrackr.backend.auth.UserPrincipal;
 import com.splitrackr.backend.household.dto.*;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
 import com.splitrackr.backend.household.service.HouseholdService;
 import com.splitrackr.backend.household.repository.HouseholdMembershipRepository;
 import com.splitrackr.backend.household.repository.HouseholdRepository;
 import com.splitrackr.backend.user.UserRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,7 +24,11 @@ import java.util.Optional;
 @AllArgsConstructor
 public class HouseholdController {
 
+    // clients may keep responses but must revalidate them with the ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final HouseholdService service;
+    private final HouseholdReadCache householdReadCache;
 
     @PostMapping
     public ResponseEntity<HouseholdResponse> createHousehold(
@@ -49,16 +57,24 @@ public class HouseholdController {
     }
 
     @GetMapping("/active")
-    public ResponseEntity<HouseholdResponse> activeHousehold() {
+    public ResponseEntity<HouseholdResponse> activeHousehold(WebRequest webRequest) {
+        // a household's id, name and invite code never change, so the active id is the version
+        Integer activeId = UserPrincipal.current().householdId();
+        if(activeId != null && webRequest.checkNotModified("\"active-" + activeId + "\"")) return null;
         return service.activeHousehold()
-                .map(ResponseEntity::ok)
+                .map(household -> ResponseEntity.ok().cacheControl(REVALIDATE).body(household))
                 .orElseGet(() -> new ResponseEntity<>(null, HttpStatus.NOT_FOUND));
     }
 
     @GetMapping("/houseUsers")
     public ResponseEntity<List<HouseholdMemberResponse>> houseUsers(
-            @RequestParam Integer houseId
+            @RequestParam Integer houseId,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(service.houseUsers(houseId));
+        // a 304 would confirm the household exists and leak its version to non-members
+        service.requireMembership(houseId);
+        String etag = householdReadCache.etag("members", houseId);
+        if(etag != null && webRequest.checkNotModified(etag)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.houseUsers(houseId));
     }
 }
@@ -43,6 +43,16 @@ public class Household {
     @Column(name = "created_date", nullable=false, updatable=false)
     private Instant createdDate;
 
+    // set once household_balance holds this household's running balances
+    @Column(name = "balance_ledger_initialized")
+    @JsonIgnore
+    private Boolean balanceLedgerInitialized;
+
+    // bumped by HouseholdRepository.bumpDataVersion only, never written through the entity
+    @Column(name = "data_version", insertable = false, updatable = false)
+    @JsonIgnore
+    private Long dataVersion;
+
     // create date and invite code if not existed already
     @PrePersist
     void onCreate() {
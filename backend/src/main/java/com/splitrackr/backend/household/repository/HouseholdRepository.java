@@ -2,7 +2,12 @@ package com.splitrackr.backend.household.repository;
 
 import com.splitrackr.backend.household.model.Household;
 import com.splitrackr.backend.household.model.HouseholdMembership;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +17,24 @@ import java.util.Optional;
 public interface HouseholdRepository extends JpaRepository<Household, Integer> {
     Optional<Household> findByInviteCode(String inviteCode);
     boolean existsByInviteCode(String inviteCode);
+
+    @Query("SELECT h.balanceLedgerInitialized FROM Household h WHERE h.householdId = :householdId")
+    Boolean findBalanceLedgerInitialized(@Param("householdId") Integer householdId);
+
+    @Modifying
+    @Query("UPDATE Household h SET h.balanceLedgerInitialized = true WHERE h.householdId = :householdId")
+    void markBalanceLedgerInitialized(@Param("householdId") Integer householdId);
+
+    @Query("SELECT COALESCE(h.dataVersion, 0) FROM Household h WHERE h.householdId = :householdId")
+    Long findDataVersion(@Param("householdId") Integer householdId);
+
+    // also row-locks the household, so writers to one household commit one at a time
+    @Modifying
+    @Query("UPDATE Household h SET h.dataVersion = COALESCE(h.dataVersion, 0) + 1 WHERE h.householdId = :householdId")
+    int bumpDataVersion(@Param("householdId") Integer householdId);
+
+    // row lock serializing work that must see a household's data as a whole
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM Household h WHERE h.householdId = :householdId")
+    Optional<Household> findByIdForUpdate(@Param("householdId") Integer householdId);
 }
@@ -0,0 +1,154 @@
+package com.splitrackr.backend.household.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.splitrackr.backend.household.repository.HouseholdRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for per-household views, keyed by (region, household, data version).
+ *
+ * Every write to a household's expenses, settlements or members calls {@link #markChanged}
+ * inside its transaction, which bumps household.data_version. A reader looks up the version
+ * first, so once a write commits every later read misses and recomputes; entries for old
+ * versions are never read again and age out by size and TTL.
+ *
+ * Callers read outside a transaction: the version lookup is its own short query, a reader
+ * waiting on another's computation holds no connection, and the loader runs in a read-only
+ * transaction of its own. Inside a read-write transaction the cache is bypassed, because it
+ * could be caching data under a version that is not committed yet.
+ *
+ * A miss runs the loader on the calling thread outside the cache's map lock; concurrent
+ * readers of the same key wait on its future rather than in a synchronized compute, which
+ * would pin virtual threads for the length of the query. That makes each (region, household,
+ * version) a single flight: when a household opens the app together, one member computes
+ * the balance and the others get its result. A reader waits at most
+ * app.read-cache.coalesce-window for the computation; past that it computes on its own
+ * without caching, so one slow query cannot hold every member of a household.
+ *
+ * splitrackr.household.reads counts the outcome of each read per region: hit, load,
+ * coalesced (a computation saved by joining one in flight), coalesce_timeout and bypass.
+ */
+@Component
+public class HouseholdReadCache {
+
+    private final HouseholdRepository householdRepository;
+    private final AsyncCache<Key, Object> views;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate readOnly;
+    private final long coalesceWindowMillis;
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+
+    public HouseholdReadCache(HouseholdRepository householdRepository, MeterRegistry meterRegistry,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.read-cache.max-size:2000}") long maxSize,
+                              @Value("${app.read-cache.ttl:10m}") Duration ttl,
+                              @Value("${app.read-cache.coalesce-window:5s}") Duration coalesceWindow) {
+        this.householdRepository = householdRepository;
+        this.meterRegistry = meterRegistry;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.coalesceWindowMillis = coalesceWindow.toMillis();
+        this.views = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, views, "householdReads");
+    }
+
+    // cached view of the household at its current version, computed by loader on a miss
+    @SuppressWarnings("unchecked")
+    public <T> T get(String region, Integer householdId, Supplier<T> loader) {
+        // a read-write transaction may have bumped the version itself and could still roll back
+        if(TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            count(region, "bypass");
+            return loader.get();
+        }
+        // only the computation holds a connection, not the version lookup or a coalesced wait
+        Supplier<T> load = () -> readOnly.execute(status -> loader.get());
+
+        Long version = householdRepository.findDataVersion(householdId);
+        if(version == null) {
+            return load.get(); // unknown household, let the loader fail as it normally would
+        }
+        var mine = new CompletableFuture<Object>();
+        var view = views.get(new Key(region, householdId, version), (key, executor) -> mine);
+        if(view == mine) {
+            count(region, "load");
+            try {
+                mine.complete(load.get());
+            } catch (RuntimeException | Error e) {
+                mine.completeExceptionally(e); // failed futures are dropped from the cache
+                throw e;
+            }
+        } else if(!view.isDone()) {
+            return (T) coalesce(region, view, load);
+        } else {
+            count(region, "hit");
+        }
+        try {
+            return (T) view.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    // waits for another reader's computation of the same view, up to the coalescing window
+    private Object coalesce(String region, CompletableFuture<Object> inFlight, Supplier<?> loader) {
+        try {
+            Object view = inFlight.get(coalesceWindowMillis, TimeUnit.MILLISECONDS);
+            count(region, "coalesced");
+            return view;
+        } catch (TimeoutException e) {
+            count(region, "coalesce_timeout");
+            return loader.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + region, e);
+        }
+    }
+
+    private void count(String region, String outcome) {
+        outcomes.computeIfAbsent(region + ':' + outcome, k -> Counter.builder("splitrackr.household.reads")
+                .description("Household view reads by outcome; coalesced ones shared a computation in flight")
+                .tags("region", region, "outcome", outcome)
+                .register(meterRegistry)).increment();
+    }
+
+    // strong ETag for a household view at its current version, or null for an unknown household
+    public String etag(String region, Integer householdId) {
+        if(householdId == null) return null;
+        Long version = householdRepository.findDataVersion(householdId);
+        return version == null ? null : "\"" + region + "-" + householdId + "-" + version + "\"";
+    }
+
+    // must run in the writing transaction so the new version commits with the data
+    public void markChanged(Integer householdId) {
+        householdRepository.bumpDataVersion(householdId);
+    }
+
+    private record Key(String region, Integer householdId, long version) {}
+}
@@ -1,15 +1,15 @@
 package com.splitrackr.backend.household.service;
 
+import com.splitrackr.backend.auth.UserPrincipal;
 import com.splitrackr.backend.household.dto.*;
 import com.splitrackr.backend.household.model.Household;
 import com.splitrackr.backend.household.model.MembershipRole;
 import com.splitrackr.backend.household.model.HouseholdMembership;
 import com.splitrackr.backend.household.repository.HouseholdMembershipRepository;
 import com.splitrackr.backend.household.repository.HouseholdRepository;
-import com.splitrackr.backend.user.User;
 import com.splitrackr.backend.user.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +18,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("splitrackr.service")
 @RequiredArgsConstructor
 public class HouseholdService {
 
@@ -27,11 +28,15 @@ public class HouseholdService {
 
     private final UserRepository userRepository;
 
+
+    private final HouseholdReadCache householdReadCache;
+
     // create a household
     @Transactional
     public HouseholdResponse createHousehold(CreateHouseholdRequest request) {
         // get and authenticate owner of household
-        var owner = getAuthenticatedUser();
+        var principal = getAuthenticatedUser();
+        var owner = userRepository.getReferenceById(principal.id());
 
         // generate invite code
         String code;
@@ -42,6 +47,7 @@ public class HouseholdService {
                 .householdName(request.getHouseHoldName())
                 .owner(owner)
                 .inviteCode(code)
+                .balanceLedgerInitialized(true) // nothing to rebuild for a new household
                 .build();
         householdRepository.save(household);
 
@@ -54,8 +60,7 @@ public class HouseholdService {
         householdMembershipRepository.save(membership);
 
         // update user householdId
-        owner.setUserHouseholdId(household.getHouseholdId());
-        userRepository.save(owner);
+        setActiveHousehold(principal, household.getHouseholdId());
 
         // return response for post request
         return HouseholdResponse.builder()
@@ -72,20 +77,20 @@ public class HouseholdService {
         // lookup household through invite code
         var household = householdRepository.findByInviteCode(request.getInviteCode()).orElseThrow();
 
-        boolean checkMembership = householdMembershipRepository.existsByUser_IdAndHousehold_HouseholdId(user.getId(), household.getHouseholdId());
+        boolean checkMembership = householdMembershipRepository.existsByUser_IdAndHousehold_HouseholdId(user.id(), household.getHouseholdId());
 
         // if user isn't member of this household already
         if(!checkMembership) {
+            householdReadCache.markChanged(household.getHouseholdId());
             householdMembershipRepository.save(HouseholdMembership.builder()
-                    .user(user)
+                    .user(userRepository.getReferenceById(user.id()))
                     .household(household)
                     .role(MembershipRole.MEMBER)
                     .build());
         }
 
         // update user householdId
-        user.setUserHouseholdId(household.getHouseholdId());
-        userRepository.save(user);
+        setActiveHousehold(user, household.getHouseholdId());
 
         // return response for post request
         return HouseholdResponse.builder()
@@ -100,7 +105,7 @@ public class HouseholdService {
     public List<HouseholdResponse> myHouseholds() {
         var user = getAuthenticatedUser();
 
-        List<HouseholdMembership> myMemberships = householdMembershipRepository.findAllByUser_Id(user.getId());
+        List<HouseholdMembership> myMemberships = householdMembershipRepository.findAllByUser_Id(user.id());
 
         // turn list of household memberships into list of houses for response
         return myMemberships.stream()
@@ -125,19 +130,17 @@ public class HouseholdService {
         // is user a member of household
         boolean isMember = householdMembershipRepository.
                 existsByUser_IdAndHousehold_HouseholdId(
-                user.getId(), hh.getHouseholdId());
+                user.id(), hh.getHouseholdId());
         // if not a member throw an error
         if(!isMember) {
             throw new org.springframework.security.access.AccessDeniedException(
                     "You are not a member of this household");
         }
         // check if user already has requested household set as active
-        if(!reqId.equals(user.getUserHouseholdId())) {
-            user.setUserHouseholdId(reqId);
-            userRepository.save(user);
+        if(!reqId.equals(user.householdId())) {
+            setActiveHousehold(user, reqId);
         }
 
-        user.setUserHouseholdId(request.getHouseholdId());
         return HouseholdResponse.builder()
                 .id(hh.getHouseholdId())
                 .name(hh.getHouseholdName())
@@ -150,7 +153,7 @@ public class HouseholdService {
         var user = getAuthenticatedUser();
 
         // current user's active household id (make sure it exists or return empty body)
-        Integer actId = user.getUserHouseholdId();
+        Integer actId = user.householdId();
         if(actId == null) {return Optional.empty();}
 
         // get user household
@@ -166,7 +169,7 @@ public class HouseholdService {
 
     @Transactional
     public List<HouseholdMemberResponse> houseUsers(Integer houseId) {
-        var user = getAuthenticatedUser();
+        requireMembership(houseId);
 
         var members = householdMembershipRepository.findAllByHousehold_HouseholdId(houseId);
         return members.stream()
@@ -181,6 +184,16 @@ public class HouseholdService {
                 .toList();
     }
 
+    // only members may see a household; also called ahead of its conditional GETs
+    @Transactional(readOnly = true)
+    public void requireMembership(Integer houseId) {
+        var user = getAuthenticatedUser();
+        if(!householdMembershipRepository.existsByUser_IdAndHousehold_HouseholdId(user.id(), houseId)) {
+            throw new org.springframework.security.access.AccessDeniedException(
+                    "You are not a member of this household");
+        }
+    }
+
     // helper func to generate invite code
     public String generate(int len) {
         String s = java.util.UUID.randomUUID().toString().replace("-", "").toUpperCase();
@@ -189,9 +202,12 @@ public class HouseholdService {
     }
 
 
-    private User getAuthenticatedUser() {
-        var auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        return userRepository.findByEmail(email).orElseThrow();
+    // persist the active household; the next request's principal reads it back
+    private void setActiveHousehold(UserPrincipal user, Integer householdId) {
+        userRepository.updateHouseholdId(user.id(), householdId);
+    }
+
+    private UserPrincipal getAuthenticatedUser() {
+        return UserPrincipal.current();
     }
 }
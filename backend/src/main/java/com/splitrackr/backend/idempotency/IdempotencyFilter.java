@@ -0,0 +1,289 @@
+package com.splitrackr.backend.idempotency;
+
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.idempotency.IdempotencyStore.Claim;
+import com.splitrackr.backend.idempotency.IdempotencyStore.Scope;
+import com.splitrackr.backend.idempotency.IdempotencyStore.StoredResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency-Key support for retried mutations (app.idempotency.paths).
+ *
+ * The first request with a key runs and its response (anything below 500) is recorded; later
+ * requests with the same key and the same method, URI and body get that response replayed with
+ * an Idempotent-Replayed header. Reusing a key for a different request is a 422. A duplicate
+ * that arrives while the first is still running waits for it: on a local future when both are
+ * on this instance, otherwise by polling the store, and gives up with a 409 after
+ * app.idempotency.wait-timeout. Keys are scoped to the authenticated user.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> MUTATING = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final long MAX_POLL_MS = 250;
+
+    private final IdempotencyStore store;
+    private final Set<String> paths;
+    private final Duration waitTimeout;
+    private final ConcurrentHashMap<Scope, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(IdempotencyStore store,
+                             @Value("${app.idempotency.paths:/api/v1/expense,/api/v1/settlement/open,/api/v1/settlement/finalize}") List<String> paths,
+                             @Value("${app.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.store = store;
+        this.paths = Set.copyOf(paths);
+        this.waitTimeout = waitTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return request.getHeader(HEADER) == null
+                || !MUTATING.contains(request.getMethod())
+                || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if(auth == null || !(auth.getPrincipal() instanceof UserPrincipal principal)) {
+            filterChain.doFilter(request, response); // left to the authorization rules
+            return;
+        }
+        String key = request.getHeader(HEADER);
+        if(key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid " + HEADER);
+            return;
+        }
+
+        var cached = new CachedBodyRequest(request);
+        String fingerprint = fingerprint(cached);
+        var scope = new Scope(principal.id(), key);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while(true) {
+            var mine = new CompletableFuture<StoredResponse>();
+            var running = inFlight.putIfAbsent(scope, mine);
+            if(running != null) {
+                // same key already running on this instance, wait for its response
+                StoredResponse done = await(running, deadline);
+                if(done != null) {
+                    replay(done, fingerprint, response);
+                    return;
+                }
+                if(System.nanoTime() >= deadline) {
+                    busy(response);
+                    return;
+                }
+                continue; // the first attempt recorded nothing, run it here
+            }
+            try {
+                mine.complete(claimAndRun(scope, fingerprint, cached, response, filterChain, deadline));
+                return;
+            } catch (IOException | ServletException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(scope, mine);
+            }
+        }
+    }
+
+    // the response this request ended with, or null if nothing was recorded
+    private StoredResponse claimAndRun(Scope scope, String fingerprint, HttpServletRequest request,
+                                       HttpServletResponse response, FilterChain filterChain, long deadline)
+            throws ServletException, IOException {
+        long pollMs = 10;
+        while(true) {
+            Claim claim = store.claim(scope, fingerprint);
+            if(claim instanceof Claim.Completed completed) {
+                replay(completed.response(), fingerprint, response);
+                return completed.response();
+            }
+            if(claim instanceof Claim.InProgress inProgress) {
+                // running on another instance
+                if(!inProgress.fingerprint().equals(fingerprint)) {
+                    mismatch(response);
+                    return null;
+                }
+                if(System.nanoTime() >= deadline) {
+                    busy(response);
+                    return null;
+                }
+                sleep(pollMs);
+                pollMs = Math.min(pollMs * 2, MAX_POLL_MS);
+                continue;
+            }
+            return run(scope, fingerprint, request, response, filterChain);
+        }
+    }
+
+    // first request with this key: run it and record the response
+    private StoredResponse run(Scope scope, String fingerprint, HttpServletRequest request,
+                               HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+        } catch (IOException | ServletException | RuntimeException e) {
+            store.release(scope, fingerprint);
+            throw e;
+        }
+
+        StoredResponse recorded = null;
+        if(wrapper.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+            recorded = new StoredResponse(fingerprint, wrapper.getStatus(), wrapper.getContentType(),
+                    wrapper.getContentAsByteArray());
+            store.complete(scope, recorded);
+        } else {
+            store.release(scope, fingerprint); // server errors may be retried
+        }
+        wrapper.copyBodyToResponse();
+        return recorded;
+    }
+
+    private void replay(StoredResponse stored, String fingerprint, HttpServletResponse response) throws IOException {
+        if(!stored.fingerprint().equals(fingerprint)) {
+            mismatch(response);
+            return;
+        }
+        response.setStatus(stored.status());
+        if(stored.contentType() != null) response.setContentType(stored.contentType());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if(stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private static void mismatch(HttpServletResponse response) throws IOException {
+        reject(response, 422, HEADER + " was already used for a different request");
+    }
+
+    private static void busy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        reject(response, HttpServletResponse.SC_CONFLICT, "A request with this " + HEADER + " is still in progress");
+    }
+
+    // written directly: an error dispatch would run without the request's authentication
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(message);
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> running, long deadline) {
+        try {
+            return running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // method, URI, query and body, so a reused key with a different payload is caught
+    private static String fingerprint(CachedBodyRequest request) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + " " + request.getRequestURI() + "?"
+                    + (request.getQueryString() == null ? "" : request.getQueryString()) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(request.body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // request whose body was read up front for the fingerprint and is served again downstream
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
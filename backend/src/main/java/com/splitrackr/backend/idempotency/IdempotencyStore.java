@@ -0,0 +1,150 @@
+package com.splitrackr.backend.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recorded responses per (user, Idempotency-Key): a local Caffeine tier in front of the
+ * idempotency_key table, both expiring after app.idempotency.ttl.
+ *
+ * A request claims its key with an INSERT ... ON CONFLICT DO NOTHING and records its response
+ * when done. Every statement runs on its own in autocommit, so no row lock is held while the
+ * request itself runs; duplicates see the unfinished claim and wait for it instead.
+ *
+ * A claim counts as abandoned once app.idempotency.in-progress-timeout passes without news
+ * from its request. While the request runs, app.idempotency.heartbeat pushes the claim's expiry
+ * forward, so a slow request keeps its key however long it takes and only a claim whose
+ * instance died is ever taken over.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final String CLAIM = "INSERT INTO idempotency_key (user_id, idem_key, fingerprint, expires_at) " +
+            "VALUES (?, ?, ?, now() + ? * interval '1 millisecond') ON CONFLICT DO NOTHING";
+    private static final String FIND = "SELECT fingerprint, status_code, content_type, response_body, " +
+            "expires_at < now() AS expired FROM idempotency_key WHERE user_id = ? AND idem_key = ?";
+    private static final String COMPLETE = "UPDATE idempotency_key SET status_code = ?, content_type = ?, " +
+            "response_body = ?, expires_at = now() + ? * interval '1 millisecond' " +
+            "WHERE user_id = ? AND idem_key = ? AND fingerprint = ?";
+    private static final String HEARTBEAT = "UPDATE idempotency_key SET expires_at = now() + ? * interval '1 millisecond' " +
+            "WHERE user_id = ? AND idem_key = ? AND fingerprint = ? AND status_code IS NULL";
+    private static final String PURGE = "DELETE FROM idempotency_key WHERE ctid IN (" +
+            "SELECT ctid FROM idempotency_key WHERE expires_at < now() LIMIT 1000)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Scope, StoredResponse> completed;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+    // claims held by requests running on this instance, kept alive by the heartbeat
+    private final Map<Scope, String> running = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                            @Value("${app.idempotency.local-max-size:10000}") long maxSize,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.in-progress-timeout:60s}") Duration inProgressTimeout,
+                            @Value("${app.idempotency.heartbeat:20s}") Duration heartbeat) {
+        if(heartbeat.multipliedBy(2).compareTo(inProgressTimeout) > 0) {
+            throw new IllegalStateException("app.idempotency.heartbeat must be at most half of in-progress-timeout");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.inProgressTimeout = inProgressTimeout;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency");
+    }
+
+    // claim the key, or report what an earlier request with it left behind
+    public Claim claim(Scope scope, String fingerprint) {
+        var local = completed.getIfPresent(scope);
+        if(local != null) return new Claim.Completed(local);
+
+        while(true) {
+            int inserted = jdbcTemplate.update(CLAIM, scope.userId(), scope.key(), fingerprint,
+                    inProgressTimeout.toMillis());
+            if(inserted == 1) {
+                running.put(scope, fingerprint);
+                return new Claim.Claimed();
+            }
+
+            List<Claim> existing = jdbcTemplate.query(FIND, (rs, row) -> {
+                if(rs.getBoolean("expired")) return null;
+                String storedFingerprint = rs.getString("fingerprint");
+                int status = rs.getInt("status_code");
+                if(rs.wasNull()) return new Claim.InProgress(storedFingerprint);
+                var response = new StoredResponse(storedFingerprint, status,
+                        rs.getString("content_type"), rs.getBytes("response_body"));
+                completed.put(scope, response);
+                return new Claim.Completed(response);
+            }, scope.userId(), scope.key());
+
+            if(existing.isEmpty()) continue; // released in between, claim again
+            if(existing.get(0) != null) return existing.get(0);
+            // expired record or a claim whose request died; clear it and claim again
+            jdbcTemplate.update("DELETE FROM idempotency_key WHERE user_id = ? AND idem_key = ? AND expires_at < now()",
+                    scope.userId(), scope.key());
+        }
+    }
+
+    public void complete(Scope scope, StoredResponse response) {
+        running.remove(scope);
+        jdbcTemplate.update(COMPLETE, response.status(), response.contentType(), response.body(), ttl.toMillis(),
+                scope.userId(), scope.key(), response.fingerprint());
+        completed.put(scope, response);
+    }
+
+    // drop an unfinished claim so a retry can run the request again
+    public void release(Scope scope, String fingerprint) {
+        running.remove(scope);
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE user_id = ? AND idem_key = ? " +
+                "AND fingerprint = ? AND status_code IS NULL", scope.userId(), scope.key(), fingerprint);
+    }
+
+    // one batch for every claim still running here
+    @Scheduled(fixedDelayString = "${app.idempotency.heartbeat:20s}")
+    public void refreshClaims() {
+        if(running.isEmpty()) return;
+        List<Object[]> claims = new ArrayList<>();
+        running.forEach((scope, fingerprint) -> claims.add(
+                new Object[]{inProgressTimeout.toMillis(), scope.userId(), scope.key(), fingerprint}));
+        jdbcTemplate.batchUpdate(HEARTBEAT, claims);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE);
+            total += deleted;
+        } while(deleted > 0);
+        if(total > 0) log.debug("Purged {} expired idempotency keys", total);
+    }
+
+    public record Scope(int userId, String key) {}
+
+    public record StoredResponse(String fingerprint, int status, String contentType, byte[] body) {}
+
+    public sealed interface Claim {
+        record Claimed() implements Claim {}
+        record InProgress(String fingerprint) implements Claim {}
+        record Completed(StoredResponse response) implements Claim {}
+    }
+}
@@ -0,0 +1,32 @@
+package com.splitrackr.backend.metrics;
+
+import lombok.NonNull;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    // streamed responses run their queries on another thread; count them for the request
+    @Override
+    public void configureAsyncSupport(@NonNull AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void preProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task) {
+                var stats = (QueryStats) request.getAttribute(QueryStatsFilter.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if(stats != null) QueryStats.bind(stats);
+            }
+
+            @Override
+            public <T> void postProcess(@NonNull NativeWebRequest request, @NonNull Callable<T> task, Object result) {
+                QueryStats.unbind();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.splitrackr.backend.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JDBC statements executed for one HTTP request and the time spent in them.
+ *
+ * Bound to the thread that is working on the request: the request thread, and the async
+ * thread while a Callable (streamed responses) runs. Statements executed with
+ * nothing bound, such as scheduled jobs, are not counted.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+
+    static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    static void bind(QueryStats stats) {
+        CURRENT.set(stats);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    void record(long elapsedNanos) {
+        statements.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    public int statements() {
+        return statements.get();
+    }
+
+    public long nanos() {
+        return nanos.get();
+    }
+}
@@ -0,0 +1,92 @@
+package com.splitrackr.backend.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how many JDBC statements each request ran and how long they took, per endpoint
+ * (splitrackr.request.statements and splitrackr.request.statement.time), and logs a warning
+ * for requests over app.metrics.statement-warn-threshold so N+1 regressions show up at once.
+ *
+ * Runs ahead of the security chain so principal lookups are counted too. For async requests
+ * the numbers are recorded on the last dispatch, once the response is complete.
+ */
+@Component
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    static final String ATTRIBUTE = QueryStats.class.getName();
+
+    private final MeterRegistry meterRegistry;
+    private final int warnThreshold;
+
+    public QueryStatsFilter(MeterRegistry meterRegistry,
+                            @Value("${app.metrics.statement-warn-threshold:25}") int warnThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.warnThreshold = warnThreshold;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+        var stats = (QueryStats) request.getAttribute(ATTRIBUTE);
+        if(stats == null) {
+            stats = new QueryStats();
+            request.setAttribute(ATTRIBUTE, stats);
+        }
+        QueryStats.bind(stats);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryStats.unbind();
+            if(!request.isAsyncStarted()) record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        String method = request.getMethod();
+
+        DistributionSummary.builder("splitrackr.request.statements")
+                .description("JDBC statements executed per request")
+                .tags("uri", uri, "method", method)
+                .register(meterRegistry)
+                .record(stats.statements());
+        Timer.builder("splitrackr.request.statement.time")
+                .description("Time spent executing JDBC statements per request")
+                .tags("uri", uri, "method", method)
+                .register(meterRegistry)
+                .record(stats.nanos(), TimeUnit.NANOSECONDS);
+
+        if(warnThreshold > 0 && stats.statements() > warnThreshold) {
+            log.warn("{} {} ran {} SQL statements in {} ms (threshold {})", method, request.getRequestURI(),
+                    stats.statements(), TimeUnit.NANOSECONDS.toMillis(stats.nanos()), warnThreshold);
+        }
+    }
+}
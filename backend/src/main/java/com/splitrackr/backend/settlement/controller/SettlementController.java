@@ -1,10 +1,18 @@
 package com.splitrackr.backend.settlement.controller;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
 import com.splitrackr.backend.settlement.dto.SettlementResponse;
+import com.splitrackr.backend.settlement.model.SettlementStatus;
 import com.splitrackr.backend.settlement.service.SettlementService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -12,11 +20,18 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SettlementController {
 
+    // clients may keep responses but must revalidate them with the ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    // a finalized settlement never changes again
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
     private final SettlementService service;
+    private final HouseholdReadCache householdReadCache;
 
     @GetMapping
-    public ResponseEntity<SettlementResponse> computeBalance() {
-        return ResponseEntity.ok(service.computeBalance());
+    public ResponseEntity<SettlementResponse> computeBalance(WebRequest webRequest) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.computeBalance());
     }
 
     @PostMapping("/open")
@@ -25,13 +40,38 @@ public class SettlementController {
     }
 
     @GetMapping("/recent")
-    public ResponseEntity<SettlementResponse> getRecentSettlement() {
-        return ResponseEntity.ok(service.getRecentSettlement());
+    public ResponseEntity<SettlementResponse> getRecentSettlement(WebRequest webRequest) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.getRecentSettlement());
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<SettlementResponse>> getSettlementHistory() {
-        return ResponseEntity.ok(service.getSettlementHistory());
+    public ResponseEntity<List<SettlementResponse>> getSettlementHistory(WebRequest webRequest) {
+        if(notModified(webRequest)) return null;
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(service.getSettlementHistory());
+    }
+
+    @GetMapping("/history/entry")
+    public ResponseEntity<SettlementResponse> getSettlement(
+            @RequestParam Integer settlementId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        // this tag is only ever issued for finalized settlements, so a match needs no lookup
+        String finalizedTag = "\"settlement-" + settlementId + "-finalized\"";
+        if(ifNoneMatch != null && ifNoneMatch.contains(finalizedTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(finalizedTag).cacheControl(IMMUTABLE).build();
+        }
+
+        var settlement = service.getSettlement(settlementId);
+        if(SettlementStatus.FINALIZED.name().equals(settlement.getStatus())) {
+            return ResponseEntity.ok().eTag(finalizedTag).cacheControl(IMMUTABLE).body(settlement);
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(settlement);
+    }
+
+    @PostMapping("/ledger/rebuild")
+    public ResponseEntity<SettlementResponse> rebuildBalanceLedger() {
+        return ResponseEntity.ok(service.rebuildBalanceLedger());
     }
 
     @PutMapping("/finalize")
@@ -40,4 +80,10 @@ public class SettlementController {
     ) {
         return ResponseEntity.ok(service.finalizeSettlement(settlementId));
     }
+
+    // answers If-None-Match from the household's data version, before any settlement query runs
+    private boolean notModified(WebRequest webRequest) {
+        String etag = householdReadCache.etag("settlement", UserPrincipal.current().householdId());
+        return etag != null && webRequest.checkNotModified(etag);
+    }
 }
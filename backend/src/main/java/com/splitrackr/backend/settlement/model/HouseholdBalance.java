@@ -0,0 +1,38 @@
+package com.splitrackr.backend.settlement.model;
+
+import com.splitrackr.backend.household.model.Household;
+import com.splitrackr.backend.user.User;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// running net balance of a member for the household's current (unfinalized) period
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(
+        name = "household_balance",
+        uniqueConstraints = @UniqueConstraint(name = "uc_household_balance_household_user",
+                columnNames = {"household_id", "user_id"})
+)
+public class HouseholdBalance {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "household_id", nullable = false)
+    private Household household;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "net_cents", nullable = false)
+    private Integer netCents;
+}
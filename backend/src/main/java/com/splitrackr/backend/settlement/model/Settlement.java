@@ -46,6 +46,10 @@ public class Settlement {
     @Column(name = "period_end", nullable = false)
     private Instant periodEnd;
 
+    // household data_version this open settlement was generated from
+    @Column(name = "source_version")
+    private Long sourceVersion;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable=false)
     private Instant createdAt;
@@ -14,8 +14,10 @@ import lombok.NoArgsConstructor;
 @Entity
 public class SettlementBalance {
 
+    // pooled sequence so a settlement's balances go out as one JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_balance_seq")
+    @SequenceGenerator(name = "settlement_balance_seq", sequenceName = "settlement_balance_seq", allocationSize = 50)
     private Integer id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -10,8 +10,10 @@ import lombok.*;
 @AllArgsConstructor
 @Entity
 public class SettlementTransfer {
+    // pooled sequence so a settlement's transfers go out as one JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_transfer_seq")
+    @SequenceGenerator(name = "settlement_transfer_seq", sequenceName = "settlement_transfer_seq", allocationSize = 50)
     private Integer transferId;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
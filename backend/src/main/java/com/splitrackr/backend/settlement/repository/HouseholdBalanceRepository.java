@@ -0,0 +1,19 @@
+package com.splitrackr.backend.settlement.repository;
+
+import com.splitrackr.backend.settlement.model.HouseholdBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HouseholdBalanceRepository extends JpaRepository<HouseholdBalance, Integer> {
+    List<HouseholdBalance> findByHousehold_HouseholdId(Integer householdId);
+
+    @Modifying
+    @Query("DELETE FROM HouseholdBalance b WHERE b.household.householdId = :householdId")
+    void deleteAllByHouseholdId(@Param("householdId") Integer householdId);
+}
@@ -4,9 +4,14 @@ import com.splitrackr.backend.expenses.model.Expense;
 import com.splitrackr.backend.expenses.model.ExpenseStatus;
 import com.splitrackr.backend.expenses.repository.ExpenseRepository;
 import com.splitrackr.backend.expenses.repository.ExpenseShareRepository;
+import com.splitrackr.backend.household.repository.HouseholdRepository;
 import com.splitrackr.backend.settlement.model.Settlement;
+import com.splitrackr.backend.settlement.repository.HouseholdBalanceRepository;
 import com.splitrackr.backend.settlement.repository.SettlementRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -15,19 +20,81 @@ import java.util.List;
 import java.util.Map;
 
 @Service
+@Timed("splitrackr.service")
 @RequiredArgsConstructor
+@Slf4j
 public class BalanceCalculationService {
 
     private final ExpenseRepository expenseRepository;
     private final SettlementRepository settlementRepository;
     private final ExpenseShareRepository expenseShareRepository;
+    private final HouseholdBalanceRepository householdBalanceRepository;
+    private final HouseholdRepository householdRepository;
 
+    // LEDGER reads the maintained balances, AGGREGATE sums in SQL, SCAN recomputes from
+    // entities, VERIFY scans and compares against the ledger
+    @Value("${app.balance.mode:LEDGER}")
+    private BalanceMode mode;
 
     public Map<Integer, Integer> calculateBalances(Integer householdId) {
+        return switch(mode) {
+            case SCAN -> scanBalances(householdId);
+            case AGGREGATE -> aggregateBalances(householdId);
+            case LEDGER -> ledgerBalances(householdId);
+            case VERIFY -> verifyLedger(householdId);
+        };
+    }
+
+    // full recompute of the current period from expenses and shares
+    public Map<Integer, Integer> scanBalances(Integer householdId) {
         var period = determinePeriod(householdId);
         return calculateBalancesInPeriod(householdId, period.start, period.end);
     }
 
+    // full recompute of the current period as one GROUP BY query, no entities loaded
+    public Map<Integer, Integer> aggregateBalances(Integer householdId) {
+        var period = determinePeriod(householdId);
+        List<Object[]> rows = period.start == null
+                ? expenseRepository.sumBalancesByHousehold(householdId)
+                : expenseRepository.sumBalancesByHouseholdAfter(householdId, period.start);
+
+        Map<Integer, Integer> balances = new HashMap<>(rows.size() * 2);
+        for(Object[] row : rows) {
+            balances.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+        }
+        return balances;
+    }
+
+    // O(members) read of the ledger, falling back to aggregation until the ledger is built
+    private Map<Integer, Integer> ledgerBalances(Integer householdId) {
+        if(!Boolean.TRUE.equals(householdRepository.findBalanceLedgerInitialized(householdId))) {
+            return aggregateBalances(householdId);
+        }
+        Map<Integer, Integer> balances = new HashMap<>();
+        for(var row : householdBalanceRepository.findByHousehold_HouseholdId(householdId)) {
+            balances.put(row.getUser().getId(), row.getNetCents());
+        }
+        return balances;
+    }
+
+    private Map<Integer, Integer> verifyLedger(Integer householdId) {
+        var scanned = scanBalances(householdId);
+        var ledger = ledgerBalances(householdId);
+        if(!nonZero(scanned).equals(nonZero(ledger))) {
+            log.warn("Balance ledger for household {} differs from scan: ledger={} scan={}",
+                    householdId, ledger, scanned);
+        }
+        return scanned;
+    }
+
+    private Map<Integer, Integer> nonZero(Map<Integer, Integer> balances) {
+        Map<Integer, Integer> out = new HashMap<>();
+        balances.forEach((userId, cents) -> {
+            if(cents != 0) out.put(userId, cents);
+        });
+        return out;
+    }
+
     // determine start and end of the current settlement
     public PeriodBoundary determinePeriod(Integer householdId) {
         var lastFinalized = settlementRepository.findLatestFinalizedByHousehold(householdId);
@@ -75,5 +142,9 @@ public class BalanceCalculationService {
 
     public record PeriodBoundary(Instant start, Instant end) {}
 
+    public enum BalanceMode {
+        SCAN, AGGREGATE, LEDGER, VERIFY
+    }
+
 
 }
@@ -0,0 +1,127 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.expenses.model.Expense;
+import com.splitrackr.backend.expenses.model.ExpenseShare;
+import com.splitrackr.backend.household.repository.HouseholdRepository;
+import com.splitrackr.backend.settlement.repository.HouseholdBalanceRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps household_balance in step with expense writes.
+ *
+ * Expense writes add their per-member delta inside the caller's transaction. A household
+ * whose ledger was never built is rebuilt from a full recompute on its first write instead, and
+ * finalizing a settlement rebuilds the ledger for the new period.
+ */
+@Service
+@Timed("splitrackr.service")
+@RequiredArgsConstructor
+public class BalanceLedgerService {
+
+    private static final String UPSERT_BALANCE = "INSERT INTO household_balance " +
+            "(household_id, user_id, net_cents) VALUES (?, ?, ?) " +
+            "ON CONFLICT (household_id, user_id) " +
+            "DO UPDATE SET net_cents = household_balance.net_cents + EXCLUDED.net_cents";
+
+    private final BalanceCalculationService balanceCalculationService;
+    private final HouseholdRepository householdRepository;
+    private final HouseholdBalanceRepository householdBalanceRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // start collecting changes for a household's current period
+    public LedgerDelta newDelta(Integer householdId) {
+        var period = balanceCalculationService.determinePeriod(householdId);
+        return new LedgerDelta(householdId, period.start());
+    }
+
+    @Transactional
+    public void recordExpense(Expense expense, List<ExpenseShare> shares) {
+        apply(newDelta(expense.getHousehold().getHouseholdId())
+                .add(expense.getPayer().getId(), expense.getAmountCents(), expense.getDateCreated(), shares, 1));
+    }
+
+    @Transactional
+    public void removeExpense(Expense expense, List<ExpenseShare> shares) {
+        apply(newDelta(expense.getHousehold().getHouseholdId())
+                .add(expense.getPayer().getId(), expense.getAmountCents(), expense.getDateCreated(), shares, -1));
+    }
+
+    @Transactional
+    public void reviseExpense(Expense expense, int previousAmountCents,
+                              List<ExpenseShare> previousShares, List<ExpenseShare> shares) {
+        Integer payerId = expense.getPayer().getId();
+        apply(newDelta(expense.getHousehold().getHouseholdId())
+                .add(payerId, previousAmountCents, expense.getDateCreated(), previousShares, -1)
+                .add(payerId, expense.getAmountCents(), expense.getDateCreated(), shares, 1));
+    }
+
+    @Transactional
+    public void apply(LedgerDelta delta) {
+        if(delta.changes.isEmpty()) return;
+
+        // flag only ever goes false -> true, so once set the delta can be applied without a lock
+        if(!Boolean.TRUE.equals(householdRepository.findBalanceLedgerInitialized(delta.householdId))) {
+            // the recompute sees this transaction's own writes, so the delta is already included
+            rebuild(delta.householdId);
+            return;
+        }
+
+        // one batched upsert, rows touched in user id order to avoid lock-order deadlocks
+        List<Object[]> rows = new ArrayList<>(delta.changes.size());
+        delta.changes.forEach((userId, cents) -> {
+            if(cents != 0) rows.add(new Object[]{delta.householdId, userId, cents});
+        });
+        jdbcTemplate.batchUpdate(UPSERT_BALANCE, rows);
+    }
+
+    // replace the ledger with a full recompute of the current period
+    @Transactional
+    public Map<Integer, Integer> rebuild(Integer householdId) {
+        householdRepository.findByIdForUpdate(householdId).orElseThrow();
+        householdBalanceRepository.flush(); // the native sum below must see pending expense changes
+
+        Map<Integer, Integer> balances = new TreeMap<>(balanceCalculationService.aggregateBalances(householdId));
+        householdBalanceRepository.deleteAllByHouseholdId(householdId);
+
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        balances.forEach((userId, cents) -> rows.add(new Object[]{householdId, userId, cents}));
+        jdbcTemplate.batchUpdate(UPSERT_BALANCE, rows);
+
+        householdRepository.markBalanceLedgerInitialized(householdId);
+        return balances;
+    }
+
+    // per-member balance changes for one household, ordered by user id
+    public static final class LedgerDelta {
+        private final Integer householdId;
+        private final Instant periodStart;
+        private final Map<Integer, Integer> changes = new TreeMap<>();
+
+        private LedgerDelta(Integer householdId, Instant periodStart) {
+            this.householdId = householdId;
+            this.periodStart = periodStart;
+        }
+
+        // credit the payer and debit each share; expenses from finalized periods are ignored
+        public LedgerDelta add(Integer payerId, int amountCents, Instant dateCreated,
+                               List<ExpenseShare> shares, int sign) {
+            if(periodStart != null && !dateCreated.isAfter(periodStart)) return this;
+
+            changes.merge(payerId, sign * amountCents, Integer::sum);
+            for(var share : shares) {
+                changes.merge(share.getUser().getId(), -sign * share.getAmountCents(), Integer::sum);
+            }
+            return this;
+        }
+    }
+}
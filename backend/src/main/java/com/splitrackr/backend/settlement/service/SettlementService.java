@@ -1,99 +1,136 @@
 package com.splitrackr.backend.settlement.service;
 
+import com.splitrackr.backend.auth.UserPrincipal;
 import com.splitrackr.backend.household.repository.HouseholdRepository;
+import com.splitrackr.backend.household.service.HouseholdReadCache;
 import com.splitrackr.backend.settlement.dto.SettlementResponse;
 import com.splitrackr.backend.settlement.model.Settlement;
 import com.splitrackr.backend.settlement.model.SettlementBalance;
 import com.splitrackr.backend.settlement.model.SettlementStatus;
 import com.splitrackr.backend.settlement.model.SettlementTransfer;
-import com.splitrackr.backend.settlement.repository.SettlementBalanceRepository;
 import com.splitrackr.backend.settlement.repository.SettlementRepository;
-import com.splitrackr.backend.settlement.repository.SettlementTransferRepository;
 import com.splitrackr.backend.user.User;
 import com.splitrackr.backend.user.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("splitrackr.service")
 @RequiredArgsConstructor
 public class SettlementService {
 
     private final SettlementRepository settlementRepository;
-    private final SettlementTransferRepository settlementTransferRepository;
-    private final SettlementBalanceRepository settlementBalanceRepository;
     private final UserRepository userRepository;
     private final HouseholdRepository householdRepository;
     private final BalanceCalculationService balanceCalculationService;
+    private final BalanceLedgerService balanceLedgerService;
     private final TransferCalculationService transferCalculationService;
+    private final HouseholdReadCache householdReadCache;
 
+    @Value("${app.settlement.exact-max-members:20}")
+    private int exactMaxMembers;
 
-    @Transactional(readOnly = true)
-    public SettlementResponse computeBalance() {
-        var user = getAuthenticatedUser();
-        Integer householdId = user.getUserHouseholdId();
-
-        // calculate current balances
-        Map<Integer, Integer> balances = balanceCalculationService.calculateBalances(householdId);
-        var period = balanceCalculationService.determinePeriod(householdId);
-
-        // get users and their balances for response
-        List<Integer> userIds = balances.keySet().stream().toList();
-        Map<Integer, User> users = userRepository.findAllById(userIds)
-                .stream()
-                .collect(Collectors.toMap(User::getId, u -> u));
+    @Value("${app.settlement.exact-budget-ms:50}")
+    private long exactBudgetMs;
 
-        // calculate balances for each user
-        List<SettlementResponse.UserBalanceDto> balanceDtos = balances.entrySet()
-                .stream()
-                .map(entry -> {
-                    User u = users.get(entry.getKey());
-                    return SettlementResponse.UserBalanceDto.builder()
-                            .userId(entry.getKey())
-                            .userName(u.getFirstname() + " " + u.getLastname())
-                            .netCents(entry.getValue())
-                            .build();
-                })
-                .toList();
 
-        // calculate transfers
-        var transfers = transferCalculationService.calculateMinimalTransfers(balances);
-        List<SettlementResponse.TransferDto> transferDtos = transfers.stream()
-                .map(t -> {
-                    User fromUser = users.get(t.fromUserId());
-                    User toUser = users.get(t.toUserId());
-                    return SettlementResponse.TransferDto.builder()
-                            .fromUserId(t.fromUserId())
-                            .toUserId(t.toUserId())
-                            .amountCents(t.amountCents())
-                            .fromUserName(fromUser.getFirstname() + " " + fromUser.getLastname())
-                            .toUserName(toUser.getFirstname() + " " + toUser.getLastname())
-                            .build();
-                })
-                .toList();
+    // not transactional: the read cache opens its own transaction for the computation
+    public SettlementResponse computeBalance() {
+        var user = getAuthenticatedUser();
+        Integer householdId = user.householdId();
+
+        // members polling together share one computation per household version
+        var computed = householdReadCache.get("balance", householdId, () -> {
+            // calculate current balances
+            Map<Integer, Integer> balances = balanceCalculationService.calculateBalances(householdId);
+            var period = balanceCalculationService.determinePeriod(householdId);
+
+            // get users and their balances for response
+            List<Integer> userIds = balances.keySet().stream().toList();
+            Map<Integer, User> users = userRepository.findAllById(userIds)
+                    .stream()
+                    .collect(Collectors.toMap(User::getId, u -> u));
+
+            // calculate balances for each user
+            List<SettlementResponse.UserBalanceDto> balanceDtos = balances.entrySet()
+                    .stream()
+                    .map(entry -> {
+                        User u = users.get(entry.getKey());
+                        return SettlementResponse.UserBalanceDto.builder()
+                                .userId(entry.getKey())
+                                .userName(u.getFirstname() + " " + u.getLastname())
+                                .netCents(entry.getValue())
+                                .build();
+                    })
+                    .toList();
+
+            // calculate transfers
+            var transfers = planTransfers(balances);
+            List<SettlementResponse.TransferDto> transferDtos = transfers.stream()
+                    .map(t -> {
+                        User fromUser = users.get(t.fromUserId());
+                        User toUser = users.get(t.toUserId());
+                        return SettlementResponse.TransferDto.builder()
+                                .fromUserId(t.fromUserId())
+                                .toUserId(t.toUserId())
+                                .amountCents(t.amountCents())
+                                .fromUserName(fromUser.getFirstname() + " " + fromUser.getLastname())
+                                .toUserName(toUser.getFirstname() + " " + toUser.getLastname())
+                                .build();
+                    })
+                    .toList();
+
+            // timestamps are left to each response
+            return SettlementResponse.builder()
+                    .householdId(householdId)
+                    .periodStart(period.start())
+                    .balances(balanceDtos)
+                    .transfers(transferDtos)
+                    .build();
+        });
 
-        // final settlement response
+        // the computation holds until the version moves, the open period's end and "as of" are now
+        Instant now = Instant.now();
         return SettlementResponse.builder()
-                .householdId(householdId)
-                .asOf(Instant.now())
-                .periodStart(period.start())
-                .periodEnd(period.end())
-                .balances(balanceDtos)
-                .transfers(transferDtos)
+                .householdId(computed.getHouseholdId())
+                .asOf(now)
+                .periodStart(computed.getPeriodStart())
+                .periodEnd(now)
+                .balances(computed.getBalances())
+                .transfers(computed.getTransfers())
                 .build();
     }
 
+    /**
+     * Generates the household's open settlement, or returns it as is when nothing changed since
+     * it was generated. Runs under the household's row lock, so concurrent calls from any number
+     * of instances go one at a time: the first regenerates, and the rest find the settlement at
+     * the current data version and reuse it.
+     */
     @Transactional
     public SettlementResponse getOpenSettlement() {
         var user = getAuthenticatedUser();
-        Integer householdId = user.getUserHouseholdId();
+        Integer householdId = user.householdId();
+
+        var household = householdRepository.findByIdForUpdate(householdId).orElseThrow();
+        long version = household.getDataVersion() == null ? 0 : household.getDataVersion();
+        var open = settlementRepository.findOpenByHousehold(householdId);
+        if(open.isPresent() && Long.valueOf(version).equals(open.get().getSourceVersion())) {
+            return buildSettlementResponseFromEntity(open.get());
+        }
 
         // calculate balances
         Map<Integer, Integer> balances = balanceCalculationService.calculateBalances(householdId);
@@ -103,24 +140,20 @@ public class SettlementService {
             throw new IllegalStateException("All balances are zero - nothing to settle");
         }
 
-        var open = settlementRepository.findOpenByHousehold(householdId);
-        open.ifPresent(settlementRepository::delete);
-
         // get transfers
-        var transfers = transferCalculationService.calculateMinimalTransfers(balances);
+        var transfers = planTransfers(balances);
         var period = balanceCalculationService.determinePeriod(householdId);
-        var household = householdRepository.findById(householdId).orElseThrow();
-
-        // new open settlement
-        var settlement = Settlement.builder()
-                .householdId(household)
-                .createdBy(user)
-                .status(SettlementStatus.OPEN)
-                .periodStart(period.start())
-                .periodEnd(period.end())
-                .build();
-
-        settlement = settlementRepository.save(settlement);
+        householdReadCache.markChanged(householdId); // /recent and /history change with it
+
+        // reuse the open settlement if there is one, otherwise start a new one
+        var settlement = open.orElseGet(() -> Settlement.builder()
+                        .householdId(household)
+                        .status(SettlementStatus.OPEN)
+                        .build());
+        settlement.setCreatedBy(userRepository.getReferenceById(user.id()));
+        settlement.setPeriodStart(period.start());
+        settlement.setPeriodEnd(period.end());
+        settlement.setSourceVersion(version + 1); // markChanged bumped it once, under our lock
 
         // create cache of user transfers
         Map<Integer, User> userCache = userRepository.findAllById(
@@ -128,25 +161,11 @@ public class SettlementService {
                 .stream()
                 .collect(Collectors.toMap(User::getId, u -> u));
 
-        // iterate through transfers and build and save them
-        for(var transfer : transfers) {
-            var transferEntity = SettlementTransfer.builder()
-                    .settlement(settlement)
-                    .fromUser(userCache.get(transfer.fromUserId()))
-                    .toUser(userCache.get(transfer.toUserId()))
-                    .amountCents(transfer.amountCents())
-                    .build();
-            settlementTransferRepository.save(transferEntity);
-        }
-
-        for(Map.Entry<Integer, Integer> entry : balances.entrySet()) {
-            var balanceEntity = SettlementBalance.builder()
-                    .settlement(settlement)
-                    .user(userCache.get(entry.getKey()))
-                    .netCents(entry.getValue())
-                    .build();
-            settlementBalanceRepository.save(balanceEntity);
-        }
+        // children are written through the cascade: unchanged rows are left alone and
+        // new rows go out as one insert batch per table
+        syncTransfers(settlement, transfers, userCache);
+        syncBalances(settlement, balances, userCache);
+        settlement = settlementRepository.save(settlement);
 
         return buildSettlementResponse(settlement, userCache);
     }
@@ -154,7 +173,7 @@ public class SettlementService {
     @Transactional
     public SettlementResponse getRecentSettlement() {
         var user = getAuthenticatedUser();
-        Integer householdId = user.getUserHouseholdId();
+        Integer householdId = user.householdId();
 
         var openSettlement = settlementRepository.findOpenByHousehold(householdId);
         if(openSettlement.isEmpty()) {
@@ -166,7 +185,7 @@ public class SettlementService {
     @Transactional
     public List<SettlementResponse> getSettlementHistory() {
         var user = getAuthenticatedUser();
-        Integer householdId = user.getUserHouseholdId();
+        Integer householdId = user.householdId();
 
         // get 25 pages of history
         var settlements = settlementRepository.findByHouseholdOrderByCreatedAtDesc(
@@ -177,12 +196,28 @@ public class SettlementService {
                 .toList();
     }
 
+    @Transactional(readOnly = true)
+    public SettlementResponse getSettlement(Integer settlementId) {
+        var user = getAuthenticatedUser();
+
+        var settlement = settlementRepository.findById(settlementId).orElseThrow();
+        if(!settlement.getHouseholdId().getHouseholdId().equals(user.householdId())) {
+            throw new AccessDeniedException("You are not allowed to view this settlement");
+        }
+        return buildSettlementResponseFromEntity(settlement);
+    }
+
     @Transactional
     public SettlementResponse finalizeSettlement(Integer settlementId) {
         var user = getAuthenticatedUser();
-        Integer householdId = user.getUserHouseholdId();
+        Integer householdId = user.householdId();
 
+        // same lock as getOpenSettlement, so a settlement is never regenerated while it is finalized
+        householdRepository.findByIdForUpdate(householdId).orElseThrow();
         var settlement = settlementRepository.findById(settlementId).orElseThrow();
+        if(!settlement.getHouseholdId().getHouseholdId().equals(householdId)) {
+            throw new AccessDeniedException("You are not allowed to finalize this settlement");
+        }
 
         // make sure settlement can be finalized
         if(settlement.getStatus() != SettlementStatus.OPEN) {
@@ -190,12 +225,25 @@ public class SettlementService {
         }
 
         // finalize it and save
+        householdReadCache.markChanged(householdId);
         settlement.setStatus(SettlementStatus.FINALIZED);
         settlement = settlementRepository.save(settlement);
 
+        // start the next period's ledger from whatever was added after this period ended
+        balanceLedgerService.rebuild(householdId);
+
         return buildSettlementResponseFromEntity(settlement);
     }
 
+    // recompute the household's balance ledger from its expenses
+    @Transactional
+    public SettlementResponse rebuildBalanceLedger() {
+        var user = getAuthenticatedUser();
+        householdReadCache.markChanged(user.householdId());
+        balanceLedgerService.rebuild(user.householdId());
+        return computeBalance();
+    }
+
     private SettlementResponse buildSettlementResponse(Settlement settlement, Map<Integer, User> userCache) {
         // build transfer DTOs
         List<SettlementResponse.TransferDto> transferDtos = settlement.getTransfers()
@@ -253,10 +301,69 @@ public class SettlementService {
     }
 
 
-    private User getAuthenticatedUser() {
-        var auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        return userRepository.findByEmail(email).orElseThrow();
+    // update the settlement's transfers in place, keyed by (from, to)
+    private void syncTransfers(Settlement settlement, List<TransferCalculationService.TransferProposal> proposals,
+                               Map<Integer, User> userCache) {
+        Map<List<Integer>, TransferCalculationService.TransferProposal> wanted = new LinkedHashMap<>();
+        for(var proposal : proposals) {
+            wanted.put(List.of(proposal.fromUserId(), proposal.toUserId()), proposal);
+        }
+
+        var it = settlement.getTransfers().iterator();
+        while(it.hasNext()) {
+            var existing = it.next();
+            var proposal = wanted.remove(List.of(existing.getFromUser().getId(), existing.getToUser().getId()));
+            if(proposal == null) {
+                it.remove(); // orphan removal deletes it
+            } else if(!proposal.amountCents().equals(existing.getAmountCents())) {
+                existing.setAmountCents(proposal.amountCents());
+            }
+        }
+
+        for(var proposal : wanted.values()) {
+            settlement.getTransfers().add(SettlementTransfer.builder()
+                    .settlement(settlement)
+                    .fromUser(userCache.get(proposal.fromUserId()))
+                    .toUser(userCache.get(proposal.toUserId()))
+                    .amountCents(proposal.amountCents())
+                    .build());
+        }
+    }
+
+    // update the settlement's balances in place, keyed by user
+    private void syncBalances(Settlement settlement, Map<Integer, Integer> balances, Map<Integer, User> userCache) {
+        Map<Integer, Integer> wanted = new TreeMap<>(balances);
+
+        var it = settlement.getBalances().iterator();
+        while(it.hasNext()) {
+            var existing = it.next();
+            Integer netCents = wanted.remove(existing.getUser().getId());
+            if(netCents == null) {
+                it.remove();
+            } else if(!netCents.equals(existing.getNetCents())) {
+                existing.setNetCents(netCents);
+            }
+        }
+
+        wanted.forEach((userId, netCents) -> settlement.getBalances().add(SettlementBalance.builder()
+                .settlement(settlement)
+                .user(userCache.get(userId))
+                .netCents(netCents)
+                .build()));
+    }
+
+    // exact solver for households small enough to partition, greedy matching for the rest
+    private List<TransferCalculationService.TransferProposal> planTransfers(Map<Integer, Integer> balances) {
+        long nonZero = balances.values().stream().filter(cents -> cents != 0).count();
+        if(nonZero <= exactMaxMembers) {
+            return transferCalculationService.calculateOptimalTransfers(
+                    balances, exactMaxMembers, Duration.ofMillis(exactBudgetMs));
+        }
+        return transferCalculationService.calculateMinimalTransfers(balances);
+    }
+
+    private UserPrincipal getAuthenticatedUser() {
+        return UserPrincipal.current();
     }
 
     private SettlementResponse.UserDto mapUserToDto(User user) {
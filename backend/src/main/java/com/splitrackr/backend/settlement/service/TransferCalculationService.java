@@ -3,88 +3,309 @@ package com.splitrackr.backend.settlement.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 public class TransferCalculationService {
 
+    // the DP tables take 5 bytes per subset: ~5MB at 20 members, ~160MB at 25, allocated per solve
+    public static final int MAX_EXACT_MEMBERS = 20;
+    // how often (in subsets) the DP checks its CPU budget
+    private static final int BUDGET_CHECK_MASK = (1 << 14) - 1;
+    // below the DP's cost per (subset, member) step (~1.5ns measured), for rejecting hopeless budgets up front
+    private static final double MIN_NANOS_PER_STEP = 1.0;
+
     // minimally calculate all transfers between users
     public List<TransferProposal> calculateMinimalTransfers(Map<Integer, Integer> balances) {
-        List<TransferProposal> transfers = new ArrayList<>();
+        int n = balances.size();
+        int[] userIds = new int[n];
+        int[] netCents = new int[n];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : balances.entrySet()) {
+            userIds[i] = entry.getKey();
+            netCents[i] = entry.getValue();
+            i++;
+        }
 
-        // creditors (positive balance) and debtors (negative balance)
-        List<UserBalance> creditors = new ArrayList<>();
-        List<UserBalance> debtors = new ArrayList<>();
+        var buffer = new TransferBuffer();
+        calculateMinimalTransfers(userIds, netCents, n, buffer);
 
-        for (Map.Entry<Integer, Integer> entry : balances.entrySet()) {
-            Integer userId = entry.getKey();
-            Integer netCents = entry.getValue();
+        List<TransferProposal> transfers = new ArrayList<>(buffer.size());
+        for (int t = 0; t < buffer.size(); t++) {
+            transfers.add(new TransferProposal(buffer.fromUserId(t), buffer.toUserId(t), buffer.amountCents(t)));
+        }
+        return transfers;
+    }
 
-            if (netCents > 0) {
-                creditors.add(new UserBalance(userId, netCents));
-            } else if (netCents < 0) {
-                debtors.add(new UserBalance(userId, Math.abs(netCents)));
+    /**
+     * Greedy largest-creditor/largest-debtor matching over parallel arrays.
+     *
+     * Reads the first {@code count} entries of {@code userIds}/{@code netCents} and replaces the
+     * contents of {@code out} with the transfers. Once {@code out} has grown to the household
+     * size, repeated calls allocate nothing.
+     *
+     * @return the number of transfers written
+     */
+    public int calculateMinimalTransfers(int[] userIds, int[] netCents, int count, TransferBuffer out) {
+        out.reset(count);
+        long[] creditors = out.creditorKeys;
+        long[] debtors = out.debtorKeys;
+
+        // creditors (positive balance) and debtors (negative balance), skipping settled users
+        int creditorCount = 0;
+        int debtorCount = 0;
+        for (int i = 0; i < count; i++) {
+            int cents = netCents[i];
+            if (cents > 0) {
+                creditors[creditorCount++] = sortKey(cents, userIds[i]);
+            } else if (cents < 0) {
+                debtors[debtorCount++] = sortKey(-cents, userIds[i]);
             }
-            // skip any users that have no balance
         }
 
         // sort by largest balance / debt (tie-breaking by userId)
-        creditors.sort(Comparator.comparing((UserBalance ub) -> ub.balance).reversed()
-                .thenComparing(ub -> ub.userId));
-        debtors.sort(Comparator.comparing((UserBalance ub) -> ub.balance).reversed()
-                .thenComparing(ub -> ub.userId));
+        Arrays.sort(creditors, 0, creditorCount);
+        Arrays.sort(debtors, 0, debtorCount);
 
         // match largest creditor to largest debtor
         int creditorIndex = 0;
         int debtorIndex = 0;
+        int creditorLeft = creditorCount > 0 ? balanceOf(creditors[0]) : 0;
+        int debtorLeft = debtorCount > 0 ? balanceOf(debtors[0]) : 0;
 
         // loop until sorted through all creditors & debtors
-        while (creditorIndex < creditors.size() && debtorIndex < debtors.size()) {
-            UserBalance creditor = creditors.get(creditorIndex);
-            UserBalance debtor = debtors.get(debtorIndex);
-
+        while (creditorIndex < creditorCount && debtorIndex < debtorCount) {
             // transfer amount is minimum of what creditor is owed and what debtor owes
-            Integer transferAmount = Math.min(creditor.balance, debtor.balance);
+            int transferAmount = Math.min(creditorLeft, debtorLeft);
 
             if (transferAmount > 0) {
-                transfers.add(new TransferProposal(
-                        debtor.userId,    // from debtor
-                        creditor.userId,  // to creditor
-                        transferAmount    // amount
-                ));
-
-                // update balances
-                creditor.balance -= transferAmount;
-                debtor.balance -= transferAmount;
+                out.add(userIdOf(debtors[debtorIndex]), userIdOf(creditors[creditorIndex]), transferAmount);
+                creditorLeft -= transferAmount;
+                debtorLeft -= transferAmount;
             }
 
             // move to next creditor or debtor if current one is settled
-            if (creditor.balance == 0) {
-                creditorIndex++;
+            if (creditorLeft == 0 && ++creditorIndex < creditorCount) {
+                creditorLeft = balanceOf(creditors[creditorIndex]);
             }
-            if (debtor.balance == 0) {
-                debtorIndex++;
+            if (debtorLeft == 0 && ++debtorIndex < debtorCount) {
+                debtorLeft = balanceOf(debtors[debtorIndex]);
             }
         }
 
+        return out.size();
+    }
+
+    /**
+     * Exact minimum number of transfers.
+     *
+     * A set of members whose balances sum to zero can always be settled with (size - 1)
+     * transfers, so the optimum is (non-zero members) - (most disjoint zero-sum groups). Exact
+     * opposite pairs are split off first as their own groups. The rest is partitioned with a
+     * bitmask DP over subsets, and each group is then settled with the greedy matcher.
+     *
+     * Falls back to {@link #calculateMinimalTransfers(Map)} when more than {@code maxMembers}
+     * (capped at {@value #MAX_EXACT_MEMBERS}) members remain after pairing, when the DP could
+     * not finish within {@code cpuBudget} even at its fastest (checked before its tables are
+     * allocated), or when it uses up {@code cpuBudget} of thread CPU time.
+     */
+    public List<TransferProposal> calculateOptimalTransfers(Map<Integer, Integer> balances,
+                                                            int maxMembers, Duration cpuBudget) {
+        // non-zero balances in user id order so results are deterministic
+        var members = balances.entrySet().stream()
+                .filter(e -> e.getValue() != 0)
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+
+        long total = 0;
+        for (var member : members) total += member.getValue();
+        if (total != 0) {
+            return calculateMinimalTransfers(balances); // not a closed period, nothing to partition
+        }
+
+        List<TransferProposal> transfers = new ArrayList<>();
+
+        // an exact opposite pair is always its own optimal group: settle it directly
+        Map<Integer, ArrayDeque<Integer>> openDebtors = new TreeMap<>();
+        List<Map.Entry<Integer, Integer>> creditors = new ArrayList<>();
+        for (var member : members) {
+            if (member.getValue() < 0) {
+                openDebtors.computeIfAbsent(-member.getValue(), k -> new ArrayDeque<>()).add(member.getKey());
+            } else {
+                creditors.add(member);
+            }
+        }
+        List<Integer> restIds = new ArrayList<>();
+        List<Integer> restCents = new ArrayList<>();
+        for (var creditor : creditors) {
+            var debtors = openDebtors.get(creditor.getValue());
+            if (debtors != null && !debtors.isEmpty()) {
+                transfers.add(new TransferProposal(debtors.poll(), creditor.getKey(), creditor.getValue()));
+            } else {
+                restIds.add(creditor.getKey());
+                restCents.add(creditor.getValue());
+            }
+        }
+        openDebtors.forEach((cents, debtors) -> debtors.forEach(userId -> {
+            restIds.add(userId);
+            restCents.add(-cents);
+        }));
+
+        int m = restIds.size();
+        if (m > Math.min(maxMembers, MAX_EXACT_MEMBERS)
+                || (double) m * (1L << m) / 2 * MIN_NANOS_PER_STEP > cpuBudget.toNanos()) {
+            return calculateMinimalTransfers(balances);
+        }
+
+        int[] ids = restIds.stream().mapToInt(Integer::intValue).toArray();
+        int[] cents = restCents.stream().mapToInt(Integer::intValue).toArray();
+        int[] order = zeroSumOrder(cents, cpuBudget.toNanos());
+        if (order == null) {
+            return calculateMinimalTransfers(balances);
+        }
+
+        // consecutive runs of the order that sum to zero are the groups
+        var buffer = new TransferBuffer();
+        int[] groupIds = new int[m];
+        int[] groupCents = new int[m];
+        int groupSize = 0;
+        long running = 0;
+        for (int index : order) {
+            groupIds[groupSize] = ids[index];
+            groupCents[groupSize] = cents[index];
+            groupSize++;
+            running += cents[index];
+            if (running == 0) {
+                calculateMinimalTransfers(groupIds, groupCents, groupSize, buffer);
+                for (int t = 0; t < buffer.size(); t++) {
+                    transfers.add(new TransferProposal(buffer.fromUserId(t), buffer.toUserId(t), buffer.amountCents(t)));
+                }
+                groupSize = 0;
+            }
+        }
         return transfers;
     }
 
+    /**
+     * Orders members so that the zero-sum prefixes split them into as many groups as possible.
+     * dp[mask] is the most zero-sum groups a chain of prefixes ending in mask can contain.
+     *
+     * @return member indexes in order, or null if the CPU budget ran out
+     */
+    private static int[] zeroSumOrder(int[] cents, long budgetNanos) {
+        int m = cents.length;
+        int full = (1 << m) - 1;
+        int[] sum = new int[full + 1];
+        byte[] dp = new byte[full + 1];
+
+        var threads = ManagementFactory.getThreadMXBean();
+        boolean cpuClock = threads.isCurrentThreadCpuTimeSupported();
+        long deadline = (cpuClock ? threads.getCurrentThreadCpuTime() : System.nanoTime()) + budgetNanos;
+
+        for (int mask = 1; mask <= full; mask++) {
+            if ((mask & BUDGET_CHECK_MASK) == 0
+                    && (cpuClock ? threads.getCurrentThreadCpuTime() : System.nanoTime()) > deadline) {
+                return null;
+            }
+
+            int low = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + cents[low];
+
+            int best = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int without = dp[mask & ~Integer.lowestOneBit(rest)];
+                if (without > best) best = without;
+            }
+            dp[mask] = (byte) (best + (sum[mask] == 0 ? 1 : 0));
+        }
+
+        // walk back from the full set, dropping a member that keeps the chain optimal
+        int[] order = new int[m];
+        int mask = full;
+        for (int position = m - 1; position >= 0; position--) {
+            int target = dp[mask] - (sum[mask] == 0 ? 1 : 0);
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = Integer.lowestOneBit(rest);
+                if (dp[mask & ~bit] == target) {
+                    order[position] = Integer.numberOfTrailingZeros(bit);
+                    mask &= ~bit;
+                    break;
+                }
+            }
+        }
+        return order;
+    }
+
+    // packs (amount desc, userId asc) into one long so a primitive sort orders it
+    private static long sortKey(int amount, int userId) {
+        return ((long) (Integer.MAX_VALUE - amount) << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    private static int balanceOf(long key) {
+        return Integer.MAX_VALUE - (int) (key >>> 32);
+    }
+
+    private static int userIdOf(long key) {
+        return (int) key;
+    }
+
 
     public record TransferProposal(Integer fromUserId, Integer toUserId, Integer amountCents) {
     }
 
-    private static class UserBalance {
-        public final Integer userId;
-        public Integer balance;
+    /**
+     * Reusable output for the array-based engine: transfers as flat parallel arrays plus the
+     * sort scratch space. Not thread-safe; keep one per thread or per call site.
+     */
+    public static final class TransferBuffer {
+        private int[] from = new int[0];
+        private int[] to = new int[0];
+        private int[] amount = new int[0];
+        private long[] creditorKeys = new long[0];
+        private long[] debtorKeys = new long[0];
+        private int size;
+
+        // empties the buffer and makes room for a household of the given size
+        void reset(int members) {
+            if (from.length < members) {
+                from = new int[members];
+                to = new int[members];
+                amount = new int[members];
+                creditorKeys = new long[members];
+                debtorKeys = new long[members];
+            }
+            size = 0;
+        }
+
+        void add(int fromUserId, int toUserId, int amountCents) {
+            from[size] = fromUserId;
+            to[size] = toUserId;
+            amount[size] = amountCents;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int fromUserId(int index) {
+            return from[index];
+        }
+
+        public int toUserId(int index) {
+            return to[index];
+        }
 
-        public UserBalance(Integer userId, Integer balance) {
-            this.userId = userId;
-            this.balance = balance;
+        public int amountCents(int index) {
+            return amount[index];
         }
     }
 }
@@ -2,6 +2,9 @@ package com.splitrackr.backend.user;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,4 +15,13 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Integer> {
     // find users by email
     Optional<User> findByEmail(String email);
+
+    // active household alone, for the per-request principal
+    @Query("SELECT u.userHouseholdId FROM User u WHERE u.id = :userId")
+    Integer findHouseholdIdById(@Param("userId") Integer userId);
+
+    // set the active household without loading the user
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.userHouseholdId = :householdId WHERE u.id = :userId")
+    int updateHouseholdId(@Param("userId") Integer userId, @Param("householdId") Integer householdId);
 }
@@ -0,0 +1,143 @@
+-- Schema as Hibernate's ddl-auto=update left it. Every statement is idempotent so this runs
+-- both on an empty database and on one that ddl-auto already created (baseline version 0).
+
+CREATE SEQUENCE IF NOT EXISTS _user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS settlement_balance_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS settlement_transfer_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS _user (
+    id                integer      NOT NULL,
+    user_household_id integer,
+    email             varchar(255) NOT NULL UNIQUE,
+    firstname         varchar(255),
+    lastname          varchar(255),
+    password          varchar(255) NOT NULL,
+    role              varchar(255) CHECK (role IN ('USER', 'ADMIN')),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS household (
+    household_id               integer GENERATED BY DEFAULT AS IDENTITY,
+    owner_id                   integer                     NOT NULL,
+    household_name             varchar(255)                NOT NULL,
+    invite_code                varchar(8)                  NOT NULL,
+    created_date               timestamp(6) with time zone NOT NULL,
+    balance_ledger_initialized boolean,
+    data_version               bigint,
+    PRIMARY KEY (household_id),
+    CONSTRAINT uc_household_invite_code UNIQUE (invite_code)
+);
+ALTER TABLE household ADD COLUMN IF NOT EXISTS balance_ledger_initialized boolean;
+ALTER TABLE household ADD COLUMN IF NOT EXISTS data_version bigint;
+
+CREATE TABLE IF NOT EXISTS household_membership (
+    household_membership_id integer GENERATED BY DEFAULT AS IDENTITY,
+    household_id            integer                     NOT NULL,
+    user_id                 integer                     NOT NULL,
+    joined_date             timestamp(6) with time zone NOT NULL,
+    role                    varchar(255) CHECK (role IN ('OWNER', 'MEMBER')),
+    PRIMARY KEY (household_membership_id),
+    CONSTRAINT uc_membership_user_household UNIQUE (user_id, household_id)
+);
+CREATE INDEX IF NOT EXISTS ix_membership_user ON household_membership (user_id);
+CREATE INDEX IF NOT EXISTS ix_membership_household ON household_membership (household_id);
+
+CREATE TABLE IF NOT EXISTS expense (
+    expense_id   integer GENERATED BY DEFAULT AS IDENTITY,
+    household_id integer                     NOT NULL,
+    payer_id     integer                     NOT NULL,
+    amount_cents integer                     NOT NULL,
+    date_created timestamp(6) with time zone NOT NULL,
+    description  varchar(255)                NOT NULL,
+    split_type   varchar(255)                NOT NULL CHECK (split_type IN ('EQUAL', 'FIXED')),
+    status       varchar(255)                NOT NULL CHECK (status IN ('ACTIVE', 'DELETED')),
+    PRIMARY KEY (expense_id)
+);
+
+CREATE TABLE IF NOT EXISTS expense_share (
+    share_id     integer GENERATED BY DEFAULT AS IDENTITY,
+    expense_id   integer NOT NULL,
+    user_id      integer NOT NULL,
+    amount_cents integer NOT NULL,
+    PRIMARY KEY (share_id)
+);
+
+CREATE TABLE IF NOT EXISTS household_balance (
+    id           integer GENERATED BY DEFAULT AS IDENTITY,
+    household_id integer NOT NULL,
+    user_id      integer NOT NULL,
+    net_cents    integer NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uc_household_balance_household_user UNIQUE (household_id, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS settlement (
+    settlement_id integer GENERATED BY DEFAULT AS IDENTITY,
+    household_id  integer                     NOT NULL,
+    created_by_id integer                     NOT NULL,
+    status        varchar(255)                NOT NULL CHECK (status IN ('OPEN', 'FINALIZED')),
+    period_start  timestamp(6) with time zone,
+    period_end    timestamp(6) with time zone NOT NULL,
+    created_at    timestamp(6) with time zone,
+    PRIMARY KEY (settlement_id)
+);
+
+-- ids come from the pooled sequences; older databases still carry an unused IDENTITY default
+CREATE TABLE IF NOT EXISTS settlement_transfer (
+    transfer_id   integer NOT NULL,
+    settlement_id integer NOT NULL,
+    from_user_id  integer NOT NULL,
+    to_user_id    integer NOT NULL,
+    amount_cents  integer NOT NULL,
+    PRIMARY KEY (transfer_id)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_balance (
+    id            integer NOT NULL,
+    settlement_id integer NOT NULL,
+    user_id       integer NOT NULL,
+    net_cents     integer NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- foreign keys keep the names Hibernate generated, so existing ones are recognised
+DO $$
+DECLARE
+    fk text[];
+BEGIN
+    FOREACH fk SLICE 1 IN ARRAY ARRAY[
+        ['expense', 'fkp8uaiw957lh2unip32auahpkd', 'household_id', 'household'],
+        ['expense', 'fkpxo2bbtvpw4e9s4oh9l8x7qu6', 'payer_id', '_user'],
+        ['expense_share', 'fkhj2o29locg1x24mba0rsibjab', 'expense_id', 'expense'],
+        ['expense_share', 'fk4wu80uoi2yf0csa22hh1ox22u', 'user_id', '_user'],
+        ['household', 'fkqpqjdkr1fn6a93h4n79n87ygi', 'owner_id', '_user'],
+        ['household_balance', 'fktoitpj07kvo6mgs879igbc2h5', 'household_id', 'household'],
+        ['household_balance', 'fk6po823vtc4y1bts7bgn02ipwi', 'user_id', '_user'],
+        ['household_membership', 'fkip3uvmvjtc0o4u025xem7pla3', 'household_id', 'household'],
+        ['household_membership', 'fkccdjo9dyeppbs5yxpfu6j27mw', 'user_id', '_user'],
+        ['settlement', 'fkbhx2bwkuv2xggokol44jn23wp', 'created_by_id', '_user'],
+        ['settlement', 'fkdsljylnmm8d95444esw9ti86a', 'household_id', 'household'],
+        ['settlement_balance', 'fkbnw8mf26q93bdh6thd1cakl0g', 'settlement_id', 'settlement'],
+        ['settlement_balance', 'fk7nej0oaucve5ri07mdbessiel', 'user_id', '_user'],
+        ['settlement_transfer', 'fk4e3eqfipm0aifnjxsle7kcjc2', 'from_user_id', '_user'],
+        ['settlement_transfer', 'fksdpi6kvfj9xdi6lhn2cpidt67', 'settlement_id', 'settlement'],
+        ['settlement_transfer', 'fke66b7m22250iun4crsoo3jqbb', 'to_user_id', '_user']
+    ]
+    LOOP
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = fk[2]) THEN
+            EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I FOREIGN KEY (%I) REFERENCES %I',
+                           fk[1], fk[2], fk[3], fk[4]);
+        END IF;
+    END LOOP;
+END $$;
+
+-- settlement ids handed out by the old IDENTITY columns must stay below the pooled blocks
+SELECT setval('settlement_transfer_seq', GREATEST(
+        (SELECT COALESCE(MAX(transfer_id), 0) FROM settlement_transfer) + 50,
+        (SELECT last_value FROM settlement_transfer_seq)));
+SELECT setval('settlement_balance_seq', GREATEST(
+        (SELECT COALESCE(MAX(id), 0) FROM settlement_balance) + 50,
+        (SELECT last_value FROM settlement_balance_seq)));
+SELECT setval('_user_seq', GREATEST(
+        (SELECT COALESCE(MAX(id), 0) FROM _user) + 50,
+        (SELECT last_value FROM _user_seq)));
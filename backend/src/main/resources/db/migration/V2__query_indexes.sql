@@ -0,0 +1,54 @@
+-- Indexes for the repository finders. Status is a bind parameter in the JPQL finders, so
+-- those indexes carry it as a column; the native balance sums filter on the literal
+-- 'ACTIVE' and get partial indexes that leave DELETED rows out.
+
+-- household lists, keyset pages, exports and the date_created > :after variants
+CREATE INDEX IF NOT EXISTS ix_expense_household_status_date
+    ON expense (household_id, status, date_created DESC, expense_id DESC);
+
+-- "paid by me" lists
+CREATE INDEX IF NOT EXISTS ix_expense_payer_status_date
+    ON expense (payer_id, status, date_created DESC, expense_id DESC);
+
+-- balance sums: payer side read from the index alone
+CREATE INDEX IF NOT EXISTS ix_expense_active_household_date
+    ON expense (household_id, date_created)
+    INCLUDE (expense_id, payer_id, amount_cents)
+    WHERE status = 'ACTIVE';
+
+CREATE INDEX IF NOT EXISTS ix_expense_share_expense
+    ON expense_share (expense_id) INCLUDE (user_id, amount_cents);
+
+CREATE INDEX IF NOT EXISTS ix_expense_share_user
+    ON expense_share (user_id);
+
+-- latest finalized settlement and the open-settlement lookup
+CREATE INDEX IF NOT EXISTS ix_settlement_household_status_period
+    ON settlement (household_id, status, period_end DESC);
+
+-- settlement history, newest first
+CREATE INDEX IF NOT EXISTS ix_settlement_household_created
+    ON settlement (household_id, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS ix_settlement_transfer_settlement
+    ON settlement_transfer (settlement_id);
+
+CREATE INDEX IF NOT EXISTS ix_settlement_balance_settlement
+    ON settlement_balance (settlement_id);
+
+-- one OPEN settlement per household; keep the newest if concurrent requests left several
+DELETE FROM settlement_transfer t USING settlement s
+WHERE t.settlement_id = s.settlement_id AND s.status = 'OPEN'
+  AND s.settlement_id < (SELECT MAX(o.settlement_id) FROM settlement o
+                         WHERE o.household_id = s.household_id AND o.status = 'OPEN');
+DELETE FROM settlement_balance b USING settlement s
+WHERE b.settlement_id = s.settlement_id AND s.status = 'OPEN'
+  AND s.settlement_id < (SELECT MAX(o.settlement_id) FROM settlement o
+                         WHERE o.household_id = s.household_id AND o.status = 'OPEN');
+DELETE FROM settlement s
+WHERE s.status = 'OPEN'
+  AND s.settlement_id < (SELECT MAX(o.settlement_id) FROM settlement o
+                         WHERE o.household_id = s.household_id AND o.status = 'OPEN');
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_settlement_open_household
+    ON settlement (household_id) WHERE status = 'OPEN';
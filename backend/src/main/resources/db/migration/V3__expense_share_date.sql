@@ -0,0 +1,15 @@
+-- expense_share carries its expense's date_created, so a partitioned layout can split both
+-- tables by the same month and every share query can name the partition key.
+ALTER TABLE expense_share ADD COLUMN IF NOT EXISTS expense_date timestamp(6) with time zone;
+
+UPDATE expense_share s
+SET expense_date = e.date_created
+FROM expense e
+WHERE e.expense_id = s.expense_id AND s.expense_date IS NULL;
+
+ALTER TABLE expense_share ALTER COLUMN expense_date SET NOT NULL;
+
+-- share joins now match on (expense_id, expense_date); keep them index-only
+DROP INDEX IF EXISTS ix_expense_share_expense;
+CREATE INDEX ix_expense_share_expense
+    ON expense_share (expense_id, expense_date) INCLUDE (user_id, amount_cents);
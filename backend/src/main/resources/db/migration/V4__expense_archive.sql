@@ -0,0 +1,38 @@
+-- Cold storage for expenses that no balance reads any more: soft-deleted ones past a grace
+-- period and everything inside long-finalized settlement periods (see ExpenseArchiver).
+-- Rows keep their ids, so an archived expense can still be looked up by id.
+
+CREATE TABLE IF NOT EXISTS expense_archive (
+    expense_id   integer                     NOT NULL,
+    household_id integer                     NOT NULL,
+    payer_id     integer                     NOT NULL,
+    amount_cents integer                     NOT NULL,
+    date_created timestamp(6) with time zone NOT NULL,
+    description  varchar(255)                NOT NULL,
+    split_type   varchar(255)                NOT NULL,
+    status       varchar(255)                NOT NULL,
+    archived_at  timestamp(6) with time zone NOT NULL DEFAULT now(),
+    PRIMARY KEY (expense_id)
+);
+
+CREATE TABLE IF NOT EXISTS expense_share_archive (
+    share_id     integer                     NOT NULL,
+    expense_id   integer                     NOT NULL,
+    user_id      integer                     NOT NULL,
+    amount_cents integer                     NOT NULL,
+    expense_date timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (share_id)
+);
+
+-- history pages that run past the hot table
+CREATE INDEX IF NOT EXISTS ix_expense_archive_household_date
+    ON expense_archive (household_id, date_created DESC, expense_id DESC)
+    WHERE status = 'ACTIVE';
+
+CREATE INDEX IF NOT EXISTS ix_expense_share_archive_expense
+    ON expense_share_archive (expense_id);
+
+-- the archiver's scan for soft-deleted rows
+CREATE INDEX IF NOT EXISTS ix_expense_deleted_date
+    ON expense (date_created)
+    WHERE status = 'DELETED';
@@ -0,0 +1,15 @@
+-- Responses recorded per (user, Idempotency-Key) so retried mutations can be replayed.
+-- A row with a NULL status_code is a claim by a request that is still running.
+CREATE TABLE IF NOT EXISTS idempotency_key (
+    user_id       integer                     NOT NULL,
+    idem_key      varchar(255)                NOT NULL,
+    fingerprint   varchar(64)                 NOT NULL,
+    status_code   integer,
+    content_type  varchar(255),
+    response_body bytea,
+    created_at    timestamp(6) with time zone NOT NULL DEFAULT now(),
+    expires_at    timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (user_id, idem_key)
+);
+
+CREATE INDEX IF NOT EXISTS ix_idempotency_key_expires ON idempotency_key (expires_at);
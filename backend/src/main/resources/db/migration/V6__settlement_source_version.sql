@@ -0,0 +1,3 @@
+-- The household data_version an open settlement was generated from. A request that finds the
+-- open settlement already at the current version returns it instead of regenerating it.
+ALTER TABLE settlement ADD COLUMN IF NOT EXISTS source_version bigint;
@@ -0,0 +1,121 @@
+-- Partitioned layout for expense and expense_share, applied only with the "partitioned"
+-- profile. Both tables are range-partitioned by the expense's month (UTC): expense on
+-- date_created, expense_share on its copy expense_date, with identical bounds so the two can
+-- be joined partition by partition. A default partition on each catches dates outside the
+-- created months. Existing rows are copied across.
+
+ALTER TABLE expense_share RENAME TO expense_share_unpartitioned;
+ALTER TABLE expense RENAME TO expense_unpartitioned;
+
+-- free the primary key names for the new tables
+DO $$
+DECLARE
+    pk record;
+BEGIN
+    FOR pk IN SELECT conrelid::regclass AS tbl, conname FROM pg_constraint
+              WHERE contype = 'p' AND conrelid IN ('expense_unpartitioned'::regclass,
+                                                   'expense_share_unpartitioned'::regclass) LOOP
+        EXECUTE format('ALTER TABLE %s RENAME CONSTRAINT %I TO %I', pk.tbl, pk.conname, pk.conname || '_old');
+    END LOOP;
+END $$;
+
+CREATE SEQUENCE IF NOT EXISTS expense_id_seq;
+CREATE SEQUENCE IF NOT EXISTS expense_share_id_seq;
+
+-- primary keys must contain the partition key
+CREATE TABLE expense (
+    expense_id   integer                     NOT NULL DEFAULT nextval('expense_id_seq'),
+    household_id integer                     NOT NULL REFERENCES household,
+    payer_id     integer                     NOT NULL REFERENCES _user,
+    amount_cents integer                     NOT NULL,
+    date_created timestamp(6) with time zone NOT NULL,
+    description  varchar(255)                NOT NULL,
+    split_type   varchar(255)                NOT NULL CHECK (split_type IN ('EQUAL', 'FIXED')),
+    status       varchar(255)                NOT NULL CHECK (status IN ('ACTIVE', 'DELETED')),
+    PRIMARY KEY (expense_id, date_created)
+) PARTITION BY RANGE (date_created);
+
+CREATE TABLE expense_share (
+    share_id     integer                     NOT NULL DEFAULT nextval('expense_share_id_seq'),
+    expense_id   integer                     NOT NULL,
+    user_id      integer                     NOT NULL REFERENCES _user,
+    amount_cents integer                     NOT NULL,
+    expense_date timestamp(6) with time zone NOT NULL,
+    PRIMARY KEY (share_id, expense_date),
+    FOREIGN KEY (expense_id, expense_date) REFERENCES expense (expense_id, date_created)
+) PARTITION BY RANGE (expense_date);
+
+ALTER SEQUENCE expense_id_seq OWNED BY expense.expense_id;
+ALTER SEQUENCE expense_share_id_seq OWNED BY expense_share.share_id;
+
+CREATE TABLE expense_default PARTITION OF expense DEFAULT;
+CREATE TABLE expense_share_default PARTITION OF expense_share DEFAULT;
+
+-- expense and expense_share partitions for the month starting at month_start (UTC). Rows of
+-- that month already in the default partitions are moved in before attaching: shares first,
+-- so no share ever points at an expense that is momentarily detached.
+CREATE OR REPLACE FUNCTION ensure_expense_partition(month_start date) RETURNS text AS $$
+DECLARE
+    suffix text := to_char(month_start, 'YYYYMM');
+    lower_bound timestamptz := month_start::timestamp AT TIME ZONE 'UTC';
+    upper_bound timestamptz := (month_start + interval '1 month')::timestamp AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass('expense_p' || suffix) IS NOT NULL THEN
+        RETURN 'expense_p' || suffix;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE expense INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   'expense_p' || suffix);
+    EXECUTE format('CREATE TABLE %I (LIKE expense_share INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   'expense_share_p' || suffix);
+    EXECUTE format('WITH moved AS (DELETE FROM expense_share_default WHERE expense_date >= %L AND expense_date < %L ' ||
+                   'RETURNING *) INSERT INTO %I SELECT * FROM moved', lower_bound, upper_bound, 'expense_share_p' || suffix);
+    EXECUTE format('WITH moved AS (DELETE FROM expense_default WHERE date_created >= %L AND date_created < %L ' ||
+                   'RETURNING *) INSERT INTO %I SELECT * FROM moved', lower_bound, upper_bound, 'expense_p' || suffix);
+    EXECUTE format('ALTER TABLE expense ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   'expense_p' || suffix, lower_bound, upper_bound);
+    EXECUTE format('ALTER TABLE expense_share ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   'expense_share_p' || suffix, lower_bound, upper_bound);
+    RETURN 'expense_p' || suffix;
+END
+$$ LANGUAGE plpgsql;
+
+-- every month that has expenses, through three months ahead
+SELECT ensure_expense_partition(month::date)
+FROM generate_series(
+        date_trunc('month', COALESCE((SELECT MIN(date_created) FROM expense_unpartitioned), now()) AT TIME ZONE 'UTC'),
+        date_trunc('month', now() AT TIME ZONE 'UTC') + interval '3 months',
+        interval '1 month') AS month;
+
+INSERT INTO expense (expense_id, household_id, payer_id, amount_cents, date_created, description, split_type, status)
+SELECT expense_id, household_id, payer_id, amount_cents, date_created, description, split_type, status
+FROM expense_unpartitioned;
+INSERT INTO expense_share (share_id, expense_id, user_id, amount_cents, expense_date)
+SELECT share_id, expense_id, user_id, amount_cents, expense_date
+FROM expense_share_unpartitioned;
+
+SELECT setval('expense_id_seq', (SELECT COALESCE(MAX(expense_id), 0) + 1 FROM expense), false);
+SELECT setval('expense_share_id_seq', (SELECT COALESCE(MAX(share_id), 0) + 1 FROM expense_share), false);
+
+DROP TABLE expense_share_unpartitioned;
+DROP TABLE expense_unpartitioned;
+
+-- the V2 index set, now partitioned indexes
+CREATE INDEX ix_expense_household_status_date
+    ON expense (household_id, status, date_created DESC, expense_id DESC);
+CREATE INDEX ix_expense_payer_status_date
+    ON expense (payer_id, status, date_created DESC, expense_id DESC);
+CREATE INDEX ix_expense_active_household_date
+    ON expense (household_id, date_created)
+    INCLUDE (expense_id, payer_id, amount_cents)
+    WHERE status = 'ACTIVE';
+CREATE INDEX ix_expense_share_expense
+    ON expense_share (expense_id, expense_date) INCLUDE (user_id, amount_cents);
+CREATE INDEX ix_expense_share_user
+    ON expense_share (user_id);
+-- V4's archiver index; this migration runs after V4 when the profile is enabled later
+CREATE INDEX IF NOT EXISTS ix_expense_deleted_date
+    ON expense (date_created)
+    WHERE status = 'DELETED';
+
+ANALYZE expense;
+ANALYZE expense_share;
@@ -0,0 +1,125 @@
+package com.splitrackr.backend;
+
+import com.splitrackr.backend.auth.AuthenticationService;
+import com.splitrackr.backend.auth.RegisterRequest;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.expenses.dto.CreateExpenseRequest;
+import com.splitrackr.backend.expenses.dto.ExpenseShareRequest;
+import com.splitrackr.backend.expenses.model.SplitType;
+import com.splitrackr.backend.expenses.service.ExpenseService;
+import com.splitrackr.backend.household.dto.CreateHouseholdRequest;
+import com.splitrackr.backend.household.dto.JoinHouseholdRequest;
+import com.splitrackr.backend.household.service.HouseholdService;
+import com.splitrackr.backend.user.UserRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application against an embedded Postgres migrated by Flyway, so tests see the same
+ * schema, indexes and SQL as production. The database and context are shared by every
+ * subclass; tests create their own users and households instead of cleaning up.
+ */
+@SpringBootTest
+public abstract class PostgresIntegrationTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    protected AuthenticationService authenticationService;
+    @Autowired
+    protected HouseholdService householdService;
+    @Autowired
+    protected ExpenseService expenseService;
+    @Autowired
+    protected UserRepository userRepository;
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("security.jwt.secret", () -> "c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0");
+        registry.add("app.cors.allowed-origins", () -> "http://localhost");
+        registry.add("app.archive.enabled", () -> "false");
+        registry.add("app.read-cache.coalesce-window", () -> "1s"); // short enough to wait out in a test
+        registry.add("app.idempotency.in-progress-timeout", () -> "2s"); // so a test can outlive a claim
+        registry.add("app.idempotency.heartbeat", () -> "500ms");
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener", () -> "warn");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                RecordingStatementInspector.class::getName);
+    }
+
+    @AfterEach
+    void clearPrincipal() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // registers a user with a unique email and makes it the current principal
+    protected UserPrincipal signUp(String firstname) {
+        String email = firstname.toLowerCase() + "." + UUID.randomUUID() + "@test.splitrackr";
+        authenticationService.register(RegisterRequest.builder()
+                .firstName(firstname)
+                .lastName("Test")
+                .email(email)
+                .password("password")
+                .build());
+        return actAs(UserPrincipal.of(userRepository.findByEmail(email).orElseThrow()));
+    }
+
+    protected UserPrincipal actAs(UserPrincipal principal) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+        return principal;
+    }
+
+    // a household owned by the first user with the others joined, each principal pointing at it
+    protected List<UserPrincipal> household(String... firstnames) {
+        var owner = signUp(firstnames[0]);
+        var created = householdService.createHousehold(CreateHouseholdRequest.builder()
+                .houseHoldName(firstnames[0] + "'s household")
+                .build());
+        var members = new ArrayList<UserPrincipal>();
+        members.add(owner.withHouseholdId(created.getId()));
+        for(String firstname : Arrays.copyOfRange(firstnames, 1, firstnames.length)) {
+            signUp(firstname);
+            householdService.joinHousehold(JoinHouseholdRequest.builder()
+                    .inviteCode(created.getInviteCode())
+                    .build());
+            members.add(UserPrincipal.current().withHouseholdId(created.getId()));
+        }
+        return members;
+    }
+
+    // an expense paid by payer and split equally over the given members
+    protected void expense(UserPrincipal payer, int amountCents, List<UserPrincipal> members) {
+        actAs(payer);
+        expenseService.createExpense(CreateExpenseRequest.builder()
+                .description("Groceries")
+                .amountCents(amountCents)
+                .type(SplitType.EQUAL)
+                .share(members.stream()
+                        .map(m -> ExpenseShareRequest.builder().payerId(m.id()).build())
+                        .toList())
+                .build());
+    }
+}
@@ -0,0 +1,34 @@
+package com.splitrackr.backend;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands tests the SQL Hibernate sends for a call, so assertions run against the statements
+ * the repositories really issue rather than hand-written copies.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+
+    // statements prepared on this thread while call runs
+    public static List<String> record(Runnable call) {
+        var statements = new ArrayList<String>();
+        RECORDED.set(statements);
+        try {
+            call.run();
+        } finally {
+            RECORDED.remove();
+        }
+        return statements;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        var statements = RECORDED.get();
+        if(statements != null) statements.add(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,157 @@
+package com.splitrackr.backend.expenses.repository;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.splitrackr.backend.RecordingStatementInspector;
+import com.splitrackr.backend.expenses.model.ExpenseStatus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN on the SQL the hot repository queries really issue, against a seeded and
+ * analyzed copy of the Flyway schema, and checks each reaches its rows through the index
+ * V2/V3 created for it.
+ *
+ * The seed is 300 households of 4 members with 200 expenses each, so one household is a
+ * small slice of the table and a sequential scan would be the planner's loss, not a tie.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ExpenseQueryPlanTest extends PostgresIntegrationTest {
+
+    // far above anything the sequences hand out to the other tests
+    private static final int BASE = 1_000_000;
+    private static final int HOUSEHOLD = BASE + 17;
+    private static final int PAYER = BASE + 16 * 4 + 1;
+
+    // with the status value in hand the planner may take the ACTIVE-only partial index instead
+    private static final String[] HOUSEHOLD_INDEXES = {
+            "ix_expense_household_status_date", "ix_expense_active_household_date"};
+    private static final String SEQ_SCAN = "Seq Scan on expense(_share)? ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ExpenseRepository expenseRepository;
+    @Autowired
+    private ExpenseShareRepository expenseShareRepository;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("INSERT INTO _user (id, user_household_id, email, firstname, lastname, password, role) " +
+                "SELECT ? + g, ? + (g - 1) / 4 + 1, 'plan' || g || '@test.splitrackr', 'Plan', 'Test', 'x', 'USER' " +
+                "FROM generate_series(1, 1200) g", BASE, BASE);
+        jdbcTemplate.update("INSERT INTO household (household_id, owner_id, household_name, invite_code, created_date, " +
+                "balance_ledger_initialized, data_version) " +
+                "SELECT ? + h, ? + (h - 1) * 4 + 1, 'Plan ' || h, 'P' || lpad(h::text, 7, '0'), now(), true, 0 " +
+                "FROM generate_series(1, 300) h", BASE, BASE);
+        jdbcTemplate.update("INSERT INTO expense (expense_id, household_id, payer_id, amount_cents, date_created, " +
+                "description, split_type, status) " +
+                "SELECT ? + (h - 1) * 200 + k, ? + h, ? + (h - 1) * 4 + k % 4 + 1, 1000, " +
+                "now() - (k || ' hours')::interval * 40, 'Groceries', 'EQUAL', " +
+                "CASE WHEN k % 50 = 0 THEN 'DELETED' ELSE 'ACTIVE' END " +
+                "FROM generate_series(1, 300) h, generate_series(1, 200) k", BASE, BASE, BASE);
+        jdbcTemplate.update("INSERT INTO expense_share (share_id, expense_id, user_id, amount_cents, expense_date) " +
+                "SELECT ? + (e.expense_id - ?) * 4 + m, e.expense_id, ? + (e.household_id - ? - 1) * 4 + m, 250, e.date_created " +
+                "FROM expense e, generate_series(1, 4) m WHERE e.expense_id > ?", BASE, BASE, BASE, BASE, BASE);
+        // fresh statistics, and a visibility map so index-only scans need no heap visits
+        jdbcTemplate.execute("VACUUM ANALYZE _user, household, expense, expense_share");
+    }
+
+    @Test
+    void householdListUsesHouseholdStatusDateIndex() {
+        var sql = single(() -> expenseRepository.findWithPayerByHousehold_HouseholdIdAndStatusOrderByDateCreatedDesc(
+                HOUSEHOLD, ExpenseStatus.ACTIVE));
+
+        assertUsesIndex(explain(sql, HOUSEHOLD, "ACTIVE"), HOUSEHOLD_INDEXES);
+    }
+
+    @Test
+    void keysetPageUsesHouseholdStatusDateIndex() {
+        var cursor = jdbcTemplate.queryForMap("SELECT date_created, expense_id FROM expense " +
+                "WHERE household_id = ? AND status = 'ACTIVE' ORDER BY date_created DESC, expense_id DESC " +
+                "OFFSET 60 LIMIT 1", HOUSEHOLD);
+        var dateCreated = ((Timestamp) cursor.get("date_created")).toInstant();
+        var expenseId = (Integer) cursor.get("expense_id");
+
+        var sql = single(() -> expenseRepository.findPageBefore(HOUSEHOLD, ExpenseStatus.ACTIVE,
+                dateCreated, expenseId, PageRequest.of(0, 21)));
+
+        var at = Timestamp.from(dateCreated);
+        assertThat(explain(sql, HOUSEHOLD, "ACTIVE", at, at, at, expenseId, 21))
+                .contains("Index Scan using ix_expense_household_status_date")
+                .doesNotContainPattern(SEQ_SCAN);
+    }
+
+    @Test
+    void payerListUsesPayerStatusDateIndex() {
+        var sql = single(() -> expenseRepository.findWithPayerByPayer_IdAndStatusOrderByDateCreatedDesc(
+                PAYER, ExpenseStatus.ACTIVE));
+
+        assertUsesIndex(explain(sql, PAYER, "ACTIVE"), "ix_expense_payer_status_date");
+    }
+
+    @Test
+    void householdSharesUseShareExpenseIndex() {
+        var sql = single(() -> expenseShareRepository.findByHouseholdAndExpenseStatus(HOUSEHOLD, ExpenseStatus.ACTIVE));
+
+        var plan = explain(sql, HOUSEHOLD, "ACTIVE");
+        assertUsesIndex(plan, HOUSEHOLD_INDEXES);
+        assertUsesIndex(plan, "ix_expense_share_expense");
+    }
+
+    @Test
+    void pageSharesUseShareExpenseIndex() {
+        var page = jdbcTemplate.queryForList("SELECT expense_id FROM expense WHERE household_id = ? " +
+                "ORDER BY date_created DESC, expense_id DESC LIMIT 20", Integer.class, HOUSEHOLD);
+        var from = Instant.now().minusSeconds(86_400L * 40);
+        var to = Instant.now();
+
+        var sql = single(() -> expenseShareRepository.findPageShares(page, from, to));
+
+        var args = new Object[page.size() + 2];
+        for(int i = 0; i < page.size(); i++) args[i] = page.get(i);
+        args[page.size()] = Timestamp.from(from);
+        args[page.size() + 1] = Timestamp.from(to);
+        assertUsesIndex(explain(sql, args), "ix_expense_share_expense");
+    }
+
+    @Test
+    void balanceSumReadsOnlyIndexes() {
+        var sql = single(() -> expenseRepository.sumBalancesByHousehold(HOUSEHOLD));
+
+        assertThat(explain(sql, HOUSEHOLD, HOUSEHOLD))
+                .contains("Index Only Scan using ix_expense_active_household_date")
+                .contains("Index Only Scan using ix_expense_share_expense")
+                .doesNotContainPattern(SEQ_SCAN);
+    }
+
+    // the one statement a repository call prepared
+    private String single(Runnable call) {
+        List<String> statements = RecordingStatementInspector.record(call);
+        assertThat(statements).hasSize(1);
+        return statements.get(0);
+    }
+
+    // reached through one of the indexes, as a plain, index-only or bitmap scan, and never a seq scan
+    private static void assertUsesIndex(String plan, String... indexes) {
+        assertThat(plan)
+                .containsPattern("(Index Scan|Index Only Scan) using (" + String.join("|", indexes) + ") "
+                        + "|Bitmap Index Scan on (" + String.join("|", indexes) + ") ")
+                .doesNotContainPattern(SEQ_SCAN);
+    }
+
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args).stream()
+                .collect(Collectors.joining("\n"));
+    }
+}
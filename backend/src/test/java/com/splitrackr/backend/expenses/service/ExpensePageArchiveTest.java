@@ -0,0 +1,83 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.expenses.dto.ExpenseResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Paging through a household whose archived expenses are newer than its hot ones, as a
+ * back-dated import or a row the archiver skipped leaves it: every expense shows up once,
+ * newest first, however the pages fall.
+ */
+class ExpensePageArchiveTest extends PostgresIntegrationTest {
+
+    // far above the ids the sequences hand out to the other tests
+    private static final int BASE = 5_000_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<UserPrincipal> members;
+    private final List<Integer> newestFirst = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        members = household("Ana", "Ben");
+        Integer householdId = members.get(0).householdId();
+
+        // archived: a day old
+        for(int k = 0; k < 3; k++) {
+            int id = BASE + householdId * 10 + k;
+            jdbcTemplate.update("INSERT INTO expense_archive (expense_id, household_id, payer_id, amount_cents, " +
+                    "date_created, description, split_type, status) " +
+                    "VALUES (?, ?, ?, 1000, now() - interval '1 day' - ? * interval '1 hour', 'Archived', 'EQUAL', 'ACTIVE')",
+                    id, householdId, members.get(0).id(), k);
+            jdbcTemplate.update("INSERT INTO expense_share_archive (share_id, expense_id, user_id, amount_cents, expense_date) " +
+                    "SELECT ?, expense_id, ?, 1000, date_created FROM expense_archive WHERE expense_id = ?",
+                    id, members.get(1).id(), id);
+            newestFirst.add(id);
+        }
+
+        // hot: back-dated by more than a year
+        for(int k = 0; k < 3; k++) {
+            expense(members.get(1), 600, members);
+        }
+        var hot = jdbcTemplate.queryForList("SELECT expense_id FROM expense WHERE household_id = ? " +
+                "ORDER BY expense_id", Integer.class, householdId);
+        for(int k = 0; k < hot.size(); k++) {
+            jdbcTemplate.update("UPDATE expense SET date_created = now() - interval '400 days' - ? * interval '1 hour' " +
+                    "WHERE expense_id = ?", k, hot.get(k));
+            jdbcTemplate.update("UPDATE expense_share s SET expense_date = e.date_created FROM expense e " +
+                    "WHERE e.expense_id = s.expense_id AND s.expense_id = ?", hot.get(k));
+        }
+        newestFirst.addAll(hot);
+    }
+
+    @Test
+    void fullHotPageStillMergesNewerArchivedRows() {
+        actAs(members.get(0));
+
+        for(int limit : new int[]{1, 2, 4, 10}) {
+            var seen = new ArrayList<ExpenseResponse>();
+            String cursor = null;
+            do {
+                var page = expenseService.listExpensePage(cursor, limit);
+                assertThat(page.getExpenses()).hasSizeLessThanOrEqualTo(limit);
+                seen.addAll(page.getExpenses());
+                cursor = page.getNextCursor();
+            } while(cursor != null);
+
+            assertThat(seen).extracting(ExpenseResponse::getId).as("limit %d", limit).isEqualTo(newestFirst);
+            assertThat(seen).allSatisfy(e -> assertThat(e.getShares()).isNotEmpty());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.splitrackr.backend.expenses.service;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.splitrackr.backend.auth.UserPrincipal;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The expense lists load expenses and shares in a fixed number of selects, however many
+ * expenses a household has.
+ */
+class ExpenseServiceStatementCountTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private List<UserPrincipal> members;
+    private int expenseCount;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        members = household("Ana", "Ben", "Cleo");
+        addExpenses(10);
+    }
+
+    @Test
+    void listExpensesIssuesVersionLookupPlusTwoSelects() {
+        actAs(members.get(1));
+
+        assertThat(statementsFor(() -> assertThat(expenseService.listExpenses()).hasSize(10))).isEqualTo(3);
+
+        addExpenses(40);
+        actAs(members.get(1));
+        assertThat(statementsFor(() -> assertThat(expenseService.listExpenses()).hasSize(50))).isEqualTo(3);
+
+        // unchanged household: only the data_version lookup
+        assertThat(statementsFor(() -> expenseService.listExpenses())).isEqualTo(1);
+    }
+
+    @Test
+    void getUserExpensesIssuesTwoSelects() {
+        actAs(members.get(0));
+
+        assertThat(statementsFor(() -> assertThat(expenseService.getUserExpenses()).hasSize(4))).isEqualTo(2);
+
+        addExpenses(40);
+        actAs(members.get(0));
+        assertThat(statementsFor(() -> assertThat(expenseService.getUserExpenses()).hasSize(17))).isEqualTo(2);
+    }
+
+    // payers rotate through the members, every expense split over all of them
+    private void addExpenses(int count) {
+        for(int i = 0; i < count; i++, expenseCount++) {
+            expense(members.get(expenseCount % members.size()), 900 + i, members);
+        }
+    }
+
+    private long statementsFor(Runnable call) {
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
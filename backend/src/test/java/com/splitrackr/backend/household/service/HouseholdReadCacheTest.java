@@ -0,0 +1,131 @@
+package com.splitrackr.backend.household.service;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two members of a household reading the same view while the first one's computation is
+ * still running: the second waits for it, or past the coalescing window computes on its own,
+ * and in neither case holds a database connection while it waits.
+ */
+class HouseholdReadCacheTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private HouseholdReadCache householdReadCache;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+
+    private Integer householdId;
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicBoolean loadedReadOnly = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        householdId = household("Ana", "Ben").get(0).householdId();
+    }
+
+    @Test
+    void waitingReaderGetsTheComputationInFlight() throws Exception {
+        double coalesced = reads("test-coalesced", "coalesced");
+
+        var first = reader("test-coalesced", this::slowLoad);
+        loading.await(10, TimeUnit.SECONDS);
+        var second = reader("test-coalesced", () -> "second");
+        awaitWaiting(second);
+
+        // only the computation holds a connection; the waiting reader holds none
+        assertThat(activeConnections()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.result()).isEqualTo("first");
+        assertThat(second.result()).isEqualTo("first");
+        assertThat(reads("test-coalesced", "coalesced")).isEqualTo(coalesced + 1);
+        assertThat(loadedReadOnly).isTrue();
+    }
+
+    @Test
+    void waitingReaderComputesOnItsOwnAfterTheWindow() throws Exception {
+        double timeouts = reads("test-timeout", "coalesce_timeout");
+
+        var first = reader("test-timeout", this::slowLoad);
+        loading.await(10, TimeUnit.SECONDS);
+        var second = reader("test-timeout", () -> "second");
+        awaitWaiting(second);
+        assertThat(activeConnections()).isEqualTo(1);
+
+        // the window is 1s in tests, the first computation is still held back
+        assertThat(second.result()).isEqualTo("second");
+        assertThat(reads("test-timeout", "coalesce_timeout")).isEqualTo(timeouts + 1);
+
+        release.countDown();
+        assertThat(first.result()).isEqualTo("first");
+    }
+
+    // queries, so its transaction holds a connection, then blocks until released
+    private String slowLoad() {
+        loadedReadOnly.set(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        loading.countDown();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "first";
+    }
+
+    private Reader reader(String region, Supplier<String> loader) {
+        var task = new FutureTask<>(() -> householdReadCache.get(region, householdId, loader));
+        var thread = new Thread(task, region + "-reader");
+        thread.start();
+        return new Reader(thread, task);
+    }
+
+    // the reader is parked on the other computation's future
+    private static void awaitWaiting(Reader reader) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(reader.thread().getState() != Thread.State.TIMED_WAITING) {
+            assertThat(System.nanoTime()).as("reader waiting").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private int activeConnections() throws SQLException {
+        return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections();
+    }
+
+    private double reads(String region, String outcome) {
+        Counter counter = meterRegistry.find("splitrackr.household.reads")
+                .tags("region", region, "outcome", outcome)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private record Reader(Thread thread, FutureTask<String> task) {
+        String result() throws Exception {
+            return task.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.splitrackr.backend.idempotency;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.idempotency.IdempotencyStore.Claim;
+import com.splitrackr.backend.idempotency.IdempotencyStore.Scope;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The filter in front of a stand-in for the controller, with the store on the embedded
+ * Postgres: replays, key reuse, duplicates racing the first request, server errors and
+ * a request that runs longer than the in-progress timeout (2s in tests).
+ */
+class IdempotencyFilterTest extends PostgresIntegrationTest {
+
+    private static final String URI = "/api/v1/expense";
+
+    @Autowired
+    private IdempotencyFilter filter;
+    @Autowired
+    private IdempotencyStore store;
+
+    private UserPrincipal user;
+    private String key;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        user = signUp("Ida");
+        key = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void repeatedRequestReplaysTheRecordedResponse() throws Exception {
+        var first = send("{\"amountCents\":100}", created(0));
+        var second = send("{\"amountCents\":100}", created(0));
+
+        assertThat(runs).hasValue(1);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertThat(second.getStatus()).isEqualTo(201);
+        assertThat(second.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(second.getContentAsString()).isEqualTo(first.getContentAsString());
+    }
+
+    @Test
+    void reusedKeyWithDifferentBodyIsRejected() throws Exception {
+        send("{\"amountCents\":100}", created(0));
+        var reused = send("{\"amountCents\":200}", created(0));
+
+        assertThat(runs).hasValue(1);
+        assertThat(reused.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        int callers = 8;
+        var pool = Executors.newFixedThreadPool(callers);
+        var start = new CountDownLatch(1);
+        try {
+            List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for(int i = 0; i < callers; i++) {
+                responses.add(pool.submit((Callable<MockHttpServletResponse>) () -> {
+                    actAs(user);
+                    start.await();
+                    try {
+                        return send("{\"amountCents\":100}", created(300));
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+
+            String body = null;
+            for(var response : responses) {
+                var done = response.get(30, TimeUnit.SECONDS);
+                assertThat(done.getStatus()).isEqualTo(201);
+                if(body == null) body = done.getContentAsString();
+                assertThat(done.getContentAsString()).isEqualTo(body);
+            }
+            assertThat(runs).hasValue(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void serverErrorReleasesTheKey() throws Exception {
+        var failed = send("{\"amountCents\":100}", (request, response) -> {
+            runs.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(503);
+        });
+        var retried = send("{\"amountCents\":100}", created(0));
+        var replayed = send("{\"amountCents\":100}", created(0));
+
+        assertThat(failed.getStatus()).isEqualTo(503);
+        assertThat(retried.getStatus()).isEqualTo(201);
+        assertThat(replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void slowRequestKeepsItsClaimPastTheTimeout() throws Exception {
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var pool = Executors.newSingleThreadExecutor();
+        try {
+            var slow = pool.submit(() -> {
+                actAs(user);
+                return send("{\"amountCents\":100}", (request, response) -> {
+                    runs.incrementAndGet();
+                    running.countDown();
+                    try {
+                        release.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ((HttpServletResponse) response).setStatus(201);
+                });
+            });
+            assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // another instance asking after the claim would have expired
+            Thread.sleep(3_000);
+            assertThat(store.claim(new Scope(user.id(), key), "another-instance"))
+                    .isInstanceOf(Claim.InProgress.class);
+
+            release.countDown();
+            assertThat(slow.get(30, TimeUnit.SECONDS).getStatus()).isEqualTo(201);
+            assertThat(runs).hasValue(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // the controller: counts its runs and answers 201 with the run number after pausing
+    private FilterChain created(long pauseMillis) {
+        return (request, response) -> {
+            int run = runs.incrementAndGet();
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            var http = (HttpServletResponse) response;
+            http.setStatus(201);
+            http.setContentType("application/json");
+            http.getWriter().write("{\"run\":" + run + "}");
+        };
+    }
+
+    private MockHttpServletResponse send(String body, FilterChain chain) throws Exception {
+        var request = new MockHttpServletRequest("POST", URI);
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
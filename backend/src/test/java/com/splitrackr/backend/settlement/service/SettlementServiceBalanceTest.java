@@ -0,0 +1,34 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Polls of the balance between two writes reuse one computation, but each response is
+ * stamped with its own time.
+ */
+class SettlementServiceBalanceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Test
+    void cachedBalanceIsStampedPerResponse() throws InterruptedException {
+        var members = household("Ana", "Ben");
+        expense(members.get(0), 5_000, members);
+        actAs(members.get(1));
+
+        var first = settlementService.computeBalance();
+        Thread.sleep(20);
+        var second = settlementService.computeBalance();
+
+        // same computation: the cached lists themselves
+        assertThat(second.getBalances()).isSameAs(first.getBalances());
+        assertThat(second.getTransfers()).isSameAs(first.getTransfers());
+        assertThat(second.getAsOf()).isAfter(first.getAsOf());
+        assertThat(second.getPeriodEnd()).isEqualTo(second.getAsOf());
+    }
+}
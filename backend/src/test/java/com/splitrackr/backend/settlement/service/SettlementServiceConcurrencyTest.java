@@ -0,0 +1,145 @@
+package com.splitrackr.backend.settlement.service;
+
+import com.splitrackr.backend.PostgresIntegrationTest;
+import com.splitrackr.backend.auth.UserPrincipal;
+import com.splitrackr.backend.settlement.dto.SettlementResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every member of a household asking for the open settlement, or finalizing it, at once.
+ * The household row lock must serialize them without deadlocks: one regeneration per
+ * data version, and never a second OPEN row.
+ */
+class SettlementServiceConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int CALLERS = 8;
+
+    @Autowired
+    private SettlementService settlementService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<UserPrincipal> members;
+    private Integer householdId;
+
+    @BeforeEach
+    void setUp() {
+        members = household("Ana", "Ben", "Cleo", "Dev");
+        householdId = members.get(0).householdId();
+        expense(members.get(0), 12_000, members);
+        expense(members.get(1), 4_000, members);
+    }
+
+    @Test
+    void parallelOpenSettlementRegeneratesOncePerDataVersion() throws Exception {
+        long before = dataVersion();
+
+        var first = inParallel(CALLERS, i -> settlementService.getOpenSettlement());
+
+        // the first caller regenerated and bumped the version once, the rest reused its result
+        assertThat(dataVersion()).isEqualTo(before + 1);
+        var settlementId = first.get(0).get().getSettlementId();
+        for(var result : first) {
+            assertThat(result.get().getSettlementId()).isEqualTo(settlementId);
+        }
+        assertThat(openSettlements()).isEqualTo(1);
+
+        // a new expense moves the version on: one more regeneration, into the same OPEN row
+        expense(members.get(2), 6_000, members);
+        long changed = dataVersion();
+
+        var second = inParallel(CALLERS, i -> settlementService.getOpenSettlement());
+
+        assertThat(dataVersion()).isEqualTo(changed + 1);
+        for(var result : second) {
+            assertThat(result.get().getSettlementId()).isEqualTo(settlementId);
+            assertThat(result.get().getTransfers()).isEqualTo(second.get(0).get().getTransfers());
+        }
+        assertThat(openSettlements()).isEqualTo(1);
+    }
+
+    @Test
+    void parallelFinalizeFinalizesOnce() throws Exception {
+        actAs(members.get(0));
+        var settlementId = settlementService.getOpenSettlement().getSettlementId();
+
+        // finalizers race each other and members regenerating the open settlement
+        var results = inParallel(CALLERS, i -> i % 2 == 0
+                ? settlementService.finalizeSettlement(settlementId)
+                : settlementService.getOpenSettlement());
+
+        int finalized = 0;
+        for(int i = 0; i < results.size(); i++) {
+            try {
+                var response = results.get(i).get();
+                if(i % 2 == 0) {
+                    assertThat(response.getStatus()).isEqualTo("FINALIZED");
+                    finalized++;
+                }
+            } catch (ExecutionException e) {
+                // late finalizers find it closed; late readers find the new period empty
+                assertThat(e.getCause())
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageMatching("Settlement not open|All balances are zero - nothing to settle");
+            }
+        }
+        assertThat(finalized).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM settlement WHERE settlement_id = ?",
+                String.class, settlementId)).isEqualTo("FINALIZED");
+        assertThat(openSettlements()).isZero();
+    }
+
+    // runs call(i) as members in turn, all released together; each must finish within the timeout
+    private List<Future<SettlementResponse>> inParallel(int callers, Function<Integer, SettlementResponse> call)
+            throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(callers);
+        var start = new CountDownLatch(1);
+        try {
+            var futures = new ArrayList<Future<SettlementResponse>>();
+            for(int i = 0; i < callers; i++) {
+                int caller = i;
+                futures.add(pool.submit((Callable<SettlementResponse>) () -> {
+                    actAs(members.get(caller % members.size()));
+                    start.await();
+                    try {
+                        return call.apply(caller);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).as("callers finished").isTrue();
+            return futures;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long dataVersion() {
+        return jdbcTemplate.queryForObject("SELECT data_version FROM household WHERE household_id = ?",
+                Long.class, householdId);
+    }
+
+    private int openSettlements() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM settlement WHERE household_id = ? AND status = 'OPEN'",
+                Integer.class, householdId);
+    }
+}